@@ -0,0 +1,215 @@
+package com.code2consciousness.dimme;
+
+import android.content.ContentResolver;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.view.WindowManager;
+
+import androidx.annotation.Nullable;
+
+import java.io.PrintWriter;
+
+/**
+ * Lowers the real backlight to a fraction of the user's brightness, and puts it back.
+ *
+ * With WRITE_SETTINGS granted ("Modify system settings") the system brightness is written,
+ * which works whatever window is on top; adaptive brightness is switched to manual while
+ * dimming so the value sticks. Otherwise the overlay window's screenBrightness override
+ * is used.
+ *
+ * Each system write is a settings provider write plus a content-observer broadcast, so
+ * they are throttled like notification posts: at most one per {@link #MIN_WRITE_INTERVAL_MS}.
+ * A change inside the interval goes to the window override (a fade or a drag tracks
+ * smoothly) and a trailing write commits the latest value and clears the override. The user's brightness and mode are captured on the first reduction and restored
+ * when the backlight goes back to 1, or by {@link #restore}. A system capture outlives the
+ * process (the setting stays lowered), so the service persists it and hands it back
+ * through {@link #adopt} after a restart. Main thread only.
+ */
+final class BacklightController {
+
+    interface Access {
+        boolean canWriteSettings();
+
+        /** The trailing write cleared the window override; the params must be pushed. */
+        void onWindowBrightnessChanged();
+    }
+
+    static final long MIN_WRITE_INTERVAL_MS = 250;
+    private static final int MAX_BRIGHTNESS = 255;
+
+    private final ContentResolver resolver;
+    private final Handler handler;
+    private final Access access;
+
+    private boolean captured;
+    private boolean systemPath;
+    private int originalBrightness;
+    private int originalMode;
+    private int lastWritten = -1;
+    private int systemWrites;
+
+    // system path throttle
+    private int pendingValue = -1;
+    private boolean commitScheduled;
+    private long lastWriteUptime;
+    private WindowManager.LayoutParams windowParams;
+    private final Runnable commitRunnable = this::commitPending;
+
+    BacklightController(ContentResolver resolver, Handler handler, Access access) {
+        this.resolver = resolver;
+        this.handler = handler;
+        this.access = access;
+    }
+
+    /**
+     * Sets the backlight to {@code factor} of the user's brightness (1 = untouched).
+     * Returns true if the window params changed and must be pushed to WindowManager.
+     */
+    boolean apply(float factor, WindowManager.LayoutParams params) {
+        if (factor >= 1f) return restore(params);
+        if (!captured) capture();
+        int value = Math.max(1, Math.round(originalBrightness * factor));
+        if (!systemPath) return setWindowBrightness(params, value / (float) MAX_BRIGHTNESS);
+
+        windowParams = params;
+        pendingValue = value;
+        if (commitScheduled) {
+            // bridge with the window until the trailing write
+            return setWindowBrightness(params, value / (float) MAX_BRIGHTNESS);
+        }
+        // the system ramps between values itself; only write whole steps
+        if (value == lastWritten) return setWindowBrightness(params, WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE);
+        long elapsed = SystemClock.uptimeMillis() - lastWriteUptime;
+        if (lastWritten < 0 || elapsed >= MIN_WRITE_INTERVAL_MS) {
+            writePending();
+            return setWindowBrightness(params, WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE);
+        }
+        commitScheduled = true;
+        handler.postDelayed(commitRunnable, MIN_WRITE_INTERVAL_MS - elapsed);
+        return setWindowBrightness(params, value / (float) MAX_BRIGHTNESS);
+    }
+
+    /**
+     * Puts the user's brightness back. Returns true if the window params changed
+     * (params may be null when the window is gone).
+     */
+    boolean restore(@Nullable WindowManager.LayoutParams params) {
+        boolean changed = params != null
+                && setWindowBrightness(params, WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE);
+        handler.removeCallbacks(commitRunnable);
+        commitScheduled = false;
+        pendingValue = -1;
+        windowParams = null;
+        if (!captured) return changed;
+        captured = false;
+        if (systemPath) {
+            lastWritten = -1;
+            writeSystem(originalBrightness);
+            if (originalMode != Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL) {
+                putSystem(Settings.System.SCREEN_BRIGHTNESS_MODE, originalMode);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Takes over a system capture from a previous process, which died with the setting
+     * still lowered. Re-reading it now would capture our own value as the user's.
+     */
+    void adopt(int brightness, int mode) {
+        captured = true;
+        systemPath = true;
+        originalBrightness = brightness;
+        originalMode = mode;
+        lastWritten = -1;
+    }
+
+    /** True while the system setting holds a lowered value that must be put back. */
+    boolean hasSystemCapture() {
+        return captured && systemPath;
+    }
+
+    boolean isLowered() {
+        return captured;
+    }
+
+    boolean isSystemPath() {
+        return systemPath;
+    }
+
+    int getOriginalBrightness() {
+        return originalBrightness;
+    }
+
+    int getOriginalMode() {
+        return originalMode;
+    }
+
+    int getSystemWrites() {
+        return systemWrites;
+    }
+
+    private void capture() {
+        captured = true;
+        originalBrightness = Settings.System.getInt(resolver, Settings.System.SCREEN_BRIGHTNESS, MAX_BRIGHTNESS);
+        originalMode = Settings.System.getInt(resolver, Settings.System.SCREEN_BRIGHTNESS_MODE,
+                Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL);
+        // checked once per dimming episode; granting mid-way takes effect on the next one
+        systemPath = access.canWriteSettings();
+        if (systemPath && originalMode != Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL) {
+            putSystem(Settings.System.SCREEN_BRIGHTNESS_MODE, Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL);
+        }
+    }
+
+    private void writePending() {
+        if (pendingValue < 0 || pendingValue == lastWritten) return;
+        lastWritten = pendingValue;
+        lastWriteUptime = SystemClock.uptimeMillis();
+        writeSystem(pendingValue);
+    }
+
+    private void commitPending() {
+        commitScheduled = false;
+        if (!captured || !systemPath) return;
+        writePending();
+        if (windowParams != null
+                && setWindowBrightness(windowParams, WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE)) {
+            access.onWindowBrightnessChanged();
+        }
+    }
+
+    private void writeSystem(int value) {
+        if (putSystem(Settings.System.SCREEN_BRIGHTNESS, value)) systemWrites++;
+    }
+
+    private boolean putSystem(String name, int value) {
+        try {
+            return Settings.System.putInt(resolver, name, value);
+        } catch (SecurityException e) {
+            // permission revoked while dimming; nothing left to undo through this path
+            return false;
+        }
+    }
+
+    private static boolean setWindowBrightness(WindowManager.LayoutParams params, float brightness) {
+        if (params.screenBrightness == brightness) return false;
+        params.screenBrightness = brightness;
+        return true;
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.print("  lowered=");
+        writer.println(captured);
+        writer.print(prefix);
+        writer.print("  path=");
+        writer.println(systemPath ? "system" : "window");
+        writer.print(prefix);
+        writer.print("  original_brightness=");
+        writer.println(captured ? originalBrightness : -1);
+        writer.print(prefix);
+        writer.print("  system_writes=");
+        writer.println(systemWrites);
+    }
+}
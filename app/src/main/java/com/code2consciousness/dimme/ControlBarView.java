@@ -0,0 +1,548 @@
+package com.code2consciousness.dimme;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.os.Bundle;
+import android.view.KeyEvent;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.widget.Button;
+import android.widget.SeekBar;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.core.view.ViewCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat.AccessibilityActionCompat;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat.RangeInfoCompat;
+import androidx.customview.widget.ExploreByTouchHelper;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import java.util.List;
+
+/**
+ * The floating control bar drawn as one flat view: minimize, seek track, pause/play,
+ * splitter and stop, on a rounded translucent background.
+ *
+ * Replaces a LinearLayout-in-LinearLayout with a SeekBar and four ImageButtons. Icons are
+ * rasterized once per density and night mode (again in onConfigurationChanged when either
+ * changes), geometry is computed in onSizeChanged, and onDraw only issues canvas
+ * calls with preallocated Paint/Path/RectF objects. Progress and pause changes only
+ * invalidate; the view is re-laid out only when the seek width changes. Touches are
+ * hit-tested here; touches on the background go to the drag listener.
+ *
+ * When collapsed (idle auto-hide) the view measures and draws as a small handle.
+ *
+ * Accessibility services see the controls as virtual views (ExploreByTouchHelper): the seek
+ * slot as a SeekBar with set-progress and scroll actions, and minimize, pause and stop as
+ * buttons. They reuse the touch hit areas and call the same listener.
+ */
+final class ControlBarView extends View {
+
+    interface Listener {
+        void onProgressChanged(int progress, boolean fromUser);
+
+        void onPauseClicked();
+
+        void onStopClicked();
+
+        void onMinimizeClicked();
+    }
+
+    // Sizes in px, as in the previous programmatic layout
+    private static final int PADDING_H = 15;
+    private static final int PADDING_V = 2;
+    private static final int PAUSE_SIZE = 90;
+    private static final int PAUSE_MARGIN = 16;
+    private static final int SPLITTER_WIDTH = 24;
+    private static final int SPLITTER_HEIGHT = 60;
+    private static final int STOP_WIDTH = 100;
+    private static final int STOP_HEIGHT = 60;
+    private static final int STOP_MARGIN = 32;
+    private static final float STOP_SCALE = 1.5f;
+    private static final int MAX = DimLevel.PROGRESS_MAX;
+    private static final float CORNER_RADIUS = 96f;
+    private static final int STROKE_WIDTH = 3;
+    /** Width of the collapsed handle; it keeps the bar's height. */
+    static final int HANDLE_WIDTH = 36;
+
+    // Touch targets, also the accessibility virtual view ids
+    private static final int TARGET_NONE = 0;
+    static final int TARGET_MINIMIZE = 1;
+    static final int TARGET_SEEK = 2;
+    static final int TARGET_PAUSE = 3;
+    static final int TARGET_STOP = 4;
+    /** Progress moved by one accessibility scroll: one notification +/- step. */
+    static final int ACCESSIBILITY_STEP = DimLevel.STEP * MAX / DimLevel.MAX;
+
+    private final int accentColor = Color.parseColor("#FFC107");
+
+    // Rasterized for these; see onConfigurationChanged
+    private int iconDensityDpi;
+    private int iconNightMode;
+    private Bitmap minimizeIcon;
+    private Bitmap pauseIcon;
+    private Bitmap playIcon;
+    private Bitmap splitterIcon;
+    private Bitmap stopIcon;
+
+    private final Paint backgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint trackPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint progressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint thumbPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint iconPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.FILTER_BITMAP_FLAG);
+    private final PorterDuffColorFilter accentFilter = new PorterDuffColorFilter(accentColor, PorterDuff.Mode.SRC_IN);
+    private final PorterDuffColorFilter resumeFilter = new PorterDuffColorFilter(Color.GREEN, PorterDuff.Mode.SRC_IN);
+    private final PorterDuffColorFilter minimizeFilter = new PorterDuffColorFilter(Color.LTGRAY, PorterDuff.Mode.SRC_IN);
+
+    private final Path backgroundPath = new Path();
+    // Hit areas (layout slots) and icon destinations, in view coordinates
+    private final RectF minimizeSlot = new RectF();
+    private final RectF seekSlot = new RectF();
+    private final RectF pauseSlot = new RectF();
+    private final RectF splitterSlot = new RectF();
+    private final RectF stopSlot = new RectF();
+    private final RectF minimizeDst = new RectF();
+    private final RectF pauseDst = new RectF();
+    private final RectF splitterDst = new RectF();
+    private final RectF stopDst = new RectF();
+    private final RectF trackRect = new RectF();
+    private final RectF progressRect = new RectF();
+
+    private float thumbRadius;
+    private float trackHeight;
+    private int minimizeWidth;
+    private int minimizeHeight;
+
+    private int seekWidth = 500;
+    private int progress;
+    private boolean paused;
+    private boolean collapsed;
+
+    private Listener listener;
+    private OnTouchListener dragListener;
+    private int touchTarget = TARGET_NONE;
+    private long layoutCount;
+    private final AccessHelper accessHelper;
+
+    ControlBarView(Context context) {
+        super(context);
+        loadIcons(getResources().getConfiguration());
+
+        backgroundPaint.setColor(Color.parseColor("#AA444444"));
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeWidth(STROKE_WIDTH);
+        strokePaint.setColor(accentColor);
+        trackPaint.setColor(Color.parseColor("#444444"));
+        progressPaint.setColor(Color.parseColor("#FFD600"));
+        thumbPaint.setColor(Color.YELLOW);
+
+        setClickable(true);
+        accessHelper = new AccessHelper(this);
+        ViewCompat.setAccessibilityDelegate(this, accessHelper);
+    }
+
+    // Density- and theme-dependent drawing state: the icon bitmaps and the seek track size
+    private void loadIcons(Configuration config) {
+        iconDensityDpi = config.densityDpi;
+        iconNightMode = config.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        float density = getResources().getDisplayMetrics().density;
+        thumbRadius = 10 * density;
+        trackHeight = Math.max(2f, density);
+
+        Context context = getContext();
+        minimizeIcon = rasterize(context, android.R.drawable.ic_menu_close_clear_cancel);
+        pauseIcon = rasterize(context, R.drawable.ic_pause);
+        playIcon = rasterize(context, R.drawable.ic_play);
+        splitterIcon = rasterize(context, android.R.drawable.divider_horizontal_bright);
+        stopIcon = rasterize(context, android.R.drawable.ic_lock_power_off);
+        minimizeWidth = minimizeIcon != null ? minimizeIcon.getWidth() : PAUSE_SIZE;
+        minimizeHeight = minimizeIcon != null ? minimizeIcon.getHeight() : PAUSE_SIZE;
+    }
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (newConfig.densityDpi == iconDensityDpi
+                && (newConfig.uiMode & Configuration.UI_MODE_NIGHT_MASK) == iconNightMode) {
+            return;
+        }
+        loadIcons(newConfig);
+        // the icon sizes feed measure and the slot geometry
+        requestLayout();
+        invalidate();
+    }
+
+    int getIconDensityDpi() {
+        return iconDensityDpi;
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Receives touches that start on the background (used for dragging the window). */
+    void setDragListener(OnTouchListener dragListener) {
+        this.dragListener = dragListener;
+    }
+
+    void setProgress(int progress) {
+        setProgressInternal(progress, false);
+    }
+
+    int getProgress() {
+        return progress;
+    }
+
+    void setPaused(boolean paused) {
+        if (this.paused == paused) return;
+        this.paused = paused;
+        invalidate();
+        accessHelper.invalidateVirtualView(TARGET_PAUSE);
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    /** Width of the seek track slot; the only property that changes the view's size. */
+    void setSeekWidth(int width) {
+        if (seekWidth == width) return;
+        seekWidth = width;
+        requestLayout();
+    }
+
+    int getSeekWidth() {
+        return seekWidth;
+    }
+
+    /** Shrinks to the edge handle, or back to the full bar. */
+    void setCollapsed(boolean collapsed) {
+        if (this.collapsed == collapsed) return;
+        this.collapsed = collapsed;
+        touchTarget = TARGET_NONE;
+        requestLayout();
+        invalidate();
+        accessHelper.invalidateRoot();
+    }
+
+    boolean isCollapsed() {
+        return collapsed;
+    }
+
+    long getLayoutCount() {
+        return layoutCount;
+    }
+
+    private void setProgressInternal(int value, boolean fromUser) {
+        value = Math.max(0, Math.min(MAX, value));
+        if (progress == value) return;
+        progress = value;
+        updateProgressRect();
+        // contents only; the bar keeps its size
+        invalidate();
+        accessHelper.invalidateVirtualView(TARGET_SEEK);
+        if (listener != null) listener.onProgressChanged(value, fromUser);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int contentHeight = Math.max(Math.max(minimizeHeight, PAUSE_SIZE),
+                Math.max(Math.round(thumbRadius * 2), STOP_HEIGHT));
+        int width = collapsed ? HANDLE_WIDTH
+                : PADDING_H + minimizeWidth + seekWidth + PAUSE_MARGIN + PAUSE_SIZE
+                + SPLITTER_WIDTH + STOP_MARGIN + STOP_WIDTH + PADDING_H;
+        int height = PADDING_V + contentHeight + PADDING_V;
+        setMeasuredDimension(resolveSize(width, widthMeasureSpec), resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        layoutCount++;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        float cy = h / 2f;
+        float x = PADDING_H;
+
+        slot(minimizeSlot, x, cy, minimizeWidth, minimizeHeight);
+        x += minimizeWidth;
+        slot(seekSlot, x, cy, seekWidth, Math.round(thumbRadius * 2));
+        x += seekWidth + PAUSE_MARGIN;
+        slot(pauseSlot, x, cy, PAUSE_SIZE, PAUSE_SIZE);
+        x += PAUSE_SIZE;
+        slot(splitterSlot, x, cy, SPLITTER_WIDTH, SPLITTER_HEIGHT);
+        x += SPLITTER_WIDTH + STOP_MARGIN;
+        slot(stopSlot, x, cy, STOP_WIDTH, STOP_HEIGHT);
+
+        fitCenter(minimizeIcon, minimizeSlot, 1f, minimizeDst);
+        fitCenter(pauseIcon, pauseSlot, 1f, pauseDst);
+        fitCenter(splitterIcon, splitterSlot, 1f, splitterDst);
+        fitCenter(stopIcon, stopSlot, STOP_SCALE, stopDst);
+
+        trackRect.set(seekSlot.left + thumbRadius, cy - trackHeight / 2f,
+                seekSlot.right - thumbRadius, cy + trackHeight / 2f);
+        updateProgressRect();
+
+        float inset = STROKE_WIDTH / 2f;
+        float radius = Math.min(CORNER_RADIUS, (h - STROKE_WIDTH) / 2f);
+        backgroundPath.reset();
+        backgroundPath.addRoundRect(inset, inset, w - inset, h - inset, radius, radius, Path.Direction.CW);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        canvas.drawPath(backgroundPath, backgroundPaint);
+        canvas.drawPath(backgroundPath, strokePaint);
+        if (collapsed) return;
+
+        drawIcon(canvas, minimizeIcon, minimizeDst, minimizeFilter);
+
+        float r = trackHeight / 2f;
+        canvas.drawRoundRect(trackRect, r, r, trackPaint);
+        canvas.drawRoundRect(progressRect, r, r, progressPaint);
+        canvas.drawCircle(progressRect.right, trackRect.centerY(), thumbRadius, thumbPaint);
+
+        drawIcon(canvas, paused ? playIcon : pauseIcon, pauseDst, paused ? resumeFilter : accentFilter);
+        drawIcon(canvas, splitterIcon, splitterDst, null);
+        drawIcon(canvas, stopIcon, stopDst, accentFilter);
+    }
+
+    private void drawIcon(Canvas canvas, @Nullable Bitmap icon, RectF dst, @Nullable PorterDuffColorFilter filter) {
+        if (icon == null) return;
+        iconPaint.setColorFilter(filter);
+        canvas.drawBitmap(icon, null, dst, iconPaint);
+    }
+
+    @SuppressLint("ClickableViewAccessibility")
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        // the handle has no controls; the idle controller's touch listener expands it
+        if (collapsed) return true;
+        float x = event.getX();
+        float y = event.getY();
+        int action = event.getActionMasked();
+
+        if (action == MotionEvent.ACTION_DOWN) touchTarget = hitTest(x, y);
+        int target = touchTarget;
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) touchTarget = TARGET_NONE;
+
+        switch (target) {
+            case TARGET_SEEK:
+                if (action != MotionEvent.ACTION_CANCEL) {
+                    if (action == MotionEvent.ACTION_DOWN && getParent() != null) {
+                        getParent().requestDisallowInterceptTouchEvent(true);
+                    }
+                    setProgressInternal(progressAt(x), true);
+                }
+                return true;
+
+            case TARGET_MINIMIZE:
+            case TARGET_PAUSE:
+            case TARGET_STOP:
+                if (action == MotionEvent.ACTION_UP && hitTest(x, y) == target) click(target);
+                return true;
+
+            default:
+                return dragListener != null && dragListener.onTouch(this, event);
+        }
+    }
+
+    @Override
+    public boolean performClick() {
+        return super.performClick();
+    }
+
+    @Override
+    protected boolean dispatchHoverEvent(MotionEvent event) {
+        return accessHelper.dispatchHoverEvent(event) || super.dispatchHoverEvent(event);
+    }
+
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        return accessHelper.dispatchKeyEvent(event) || super.dispatchKeyEvent(event);
+    }
+
+    @Override
+    protected void onFocusChanged(boolean gainFocus, int direction, @Nullable Rect previouslyFocusedRect) {
+        super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+        accessHelper.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+    }
+
+    private void click(int target) {
+        if (listener == null) return;
+        if (target == TARGET_MINIMIZE) {
+            listener.onMinimizeClicked();
+        } else if (target == TARGET_PAUSE) {
+            listener.onPauseClicked();
+        } else if (target == TARGET_STOP) {
+            listener.onStopClicked();
+        }
+    }
+
+    private int hitTest(float x, float y) {
+        if (seekSlot.left <= x && x < seekSlot.right && y >= 0 && y < getHeight()) return TARGET_SEEK;
+        if (pauseSlot.contains(x, y)) return TARGET_PAUSE;
+        if (stopSlot.contains(x, y)) return TARGET_STOP;
+        if (minimizeSlot.contains(x, y)) return TARGET_MINIMIZE;
+        return TARGET_NONE;
+    }
+
+    private RectF slotOf(int target) {
+        switch (target) {
+            case TARGET_MINIMIZE:
+                return minimizeSlot;
+            case TARGET_SEEK:
+                return seekSlot;
+            case TARGET_PAUSE:
+                return pauseSlot;
+            default:
+                return stopSlot;
+        }
+    }
+
+    private int progressAt(float x) {
+        float span = trackRect.width();
+        if (span <= 0) return progress;
+        float fraction = (x - trackRect.left) / span;
+        return Math.round(Math.max(0f, Math.min(1f, fraction)) * MAX);
+    }
+
+    private void updateProgressRect() {
+        float fraction = progress / (float) MAX;
+        progressRect.set(trackRect.left, trackRect.top,
+                trackRect.left + trackRect.width() * fraction, trackRect.bottom);
+    }
+
+    private static void slot(RectF out, float left, float centerY, int width, int height) {
+        out.set(left, centerY - height / 2f, left + width, centerY + height / 2f);
+    }
+
+    // ImageView FIT_CENTER, optionally scaled around the slot center like View.setScaleX/Y
+    private static void fitCenter(@Nullable Bitmap icon, RectF slot, float scale, RectF out) {
+        if (icon == null) {
+            out.setEmpty();
+            return;
+        }
+        float fit = Math.min(slot.width() / icon.getWidth(), slot.height() / icon.getHeight()) * scale;
+        float w = icon.getWidth() * fit;
+        float h = icon.getHeight() * fit;
+        out.set(slot.centerX() - w / 2f, slot.centerY() - h / 2f, slot.centerX() + w / 2f, slot.centerY() + h / 2f);
+    }
+
+    private final class AccessHelper extends ExploreByTouchHelper {
+        private final Rect bounds = new Rect();
+
+        AccessHelper(View host) {
+            super(host);
+        }
+
+        @Override
+        protected int getVirtualViewAt(float x, float y) {
+            if (collapsed) return INVALID_ID;
+            int target = hitTest(x, y);
+            return target == TARGET_NONE ? INVALID_ID : target;
+        }
+
+        @Override
+        protected void getVisibleVirtualViews(List<Integer> ids) {
+            // the handle has no controls of its own
+            if (collapsed) return;
+            ids.add(TARGET_MINIMIZE);
+            ids.add(TARGET_SEEK);
+            ids.add(TARGET_PAUSE);
+            ids.add(TARGET_STOP);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation") // ExploreByTouchHelper requires parent bounds
+        protected void onPopulateNodeForVirtualView(int id, @NonNull AccessibilityNodeInfoCompat node) {
+            slotOf(id).roundOut(bounds);
+            node.setBoundsInParent(bounds);
+            if (id == TARGET_SEEK) {
+                node.setClassName(SeekBar.class.getName());
+                node.setContentDescription(getContext().getString(R.string.controls_dim_level));
+                node.setRangeInfo(RangeInfoCompat.obtain(RangeInfoCompat.RANGE_TYPE_INT, 0, MAX, progress));
+                node.addAction(AccessibilityActionCompat.ACTION_SET_PROGRESS);
+                if (progress < MAX) node.addAction(AccessibilityActionCompat.ACTION_SCROLL_FORWARD);
+                if (progress > 0) node.addAction(AccessibilityActionCompat.ACTION_SCROLL_BACKWARD);
+                return;
+            }
+            node.setClassName(Button.class.getName());
+            node.setContentDescription(getContext().getString(descriptionOf(id)));
+            node.addAction(AccessibilityActionCompat.ACTION_CLICK);
+        }
+
+        @Override
+        protected boolean onPerformActionForVirtualView(int id, int action, @Nullable Bundle arguments) {
+            if (id == TARGET_SEEK) {
+                if (action == AccessibilityActionCompat.ACTION_SCROLL_FORWARD.getId()) {
+                    return setProgressFromAccessibility(progress + ACCESSIBILITY_STEP);
+                }
+                if (action == AccessibilityActionCompat.ACTION_SCROLL_BACKWARD.getId()) {
+                    return setProgressFromAccessibility(progress - ACCESSIBILITY_STEP);
+                }
+                if (action == AccessibilityActionCompat.ACTION_SET_PROGRESS.getId()) {
+                    if (arguments == null
+                            || !arguments.containsKey(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_PROGRESS_VALUE)) {
+                        return false;
+                    }
+                    float value = arguments.getFloat(AccessibilityNodeInfoCompat.ACTION_ARGUMENT_PROGRESS_VALUE);
+                    return setProgressFromAccessibility(Math.round(value));
+                }
+                return false;
+            }
+            if (action != AccessibilityNodeInfoCompat.ACTION_CLICK) return false;
+            click(id);
+            sendEventForVirtualView(id, AccessibilityEvent.TYPE_VIEW_CLICKED);
+            return true;
+        }
+
+        private boolean setProgressFromAccessibility(int value) {
+            int before = progress;
+            setProgressInternal(value, true);
+            return progress != before;
+        }
+
+        private int descriptionOf(int id) {
+            switch (id) {
+                case TARGET_MINIMIZE:
+                    return R.string.controls_minimize;
+                case TARGET_PAUSE:
+                    return paused ? R.string.controls_resume : R.string.controls_pause;
+                default:
+                    return R.string.controls_stop;
+            }
+        }
+    }
+
+    @Nullable
+    private static Bitmap rasterize(Context context, @DrawableRes int res) {
+        Drawable d = ContextCompat.getDrawable(context, res);
+        if (d == null) return null;
+        int w = d.getIntrinsicWidth() > 0 ? d.getIntrinsicWidth() : 48;
+        int h = d.getIntrinsicHeight() > 0 ? d.getIntrinsicHeight() : 48;
+        Bitmap bmp = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bmp);
+        d.setBounds(0, 0, w, h);
+        d.draw(canvas);
+        return bmp;
+    }
+}
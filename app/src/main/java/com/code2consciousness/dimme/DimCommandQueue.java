@@ -0,0 +1,93 @@
+package com.code2consciousness.dimme;
+
+import android.view.Choreographer;
+
+import com.code2consciousness.dimme.core.DimCommandFold;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Folds bursts of PLUS/MINUS/PAUSE commands into one net change.
+ *
+ * Producers only add to a {@link DimCommandFold} (atomic level delta and pause toggles).
+ * The consumer is a frame callback: once the burst window has elapsed it drains the fold
+ * and applies the net result once, so N PLUS taps become a single -STEP * N change and
+ * paired PAUSE toggles cancel out.
+ */
+final class DimCommandQueue implements Choreographer.FrameCallback {
+
+    /** About three frames at 60 Hz. */
+    static final long DEFAULT_WINDOW_NANOS = 48_000_000L;
+
+    interface Sink extends DimCommandFold.Sink {
+        /** Current pause state, used to drop nudges like the direct path does. */
+        boolean isPaused();
+    }
+
+    private final FrameScheduler frames;
+    private final Sink sink;
+    private final long windowNanos;
+
+    private final DimCommandFold fold = new DimCommandFold();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    // Consumer (frame callback) state
+    private long windowStartNanos = -1;
+
+    private final AtomicInteger enqueuedCount = new AtomicInteger();
+    private int appliedCount;
+
+    DimCommandQueue(FrameScheduler frames, long windowNanos, Sink sink) {
+        this.frames = frames;
+        this.windowNanos = windowNanos;
+        this.sink = sink;
+    }
+
+    void enqueueNudge(int delta) {
+        if (!fold.addNudge(delta, sink.isPaused())) return;
+        enqueued();
+    }
+
+    void enqueueTogglePause() {
+        fold.addTogglePause();
+        enqueued();
+    }
+
+    /** Drops everything that has not been applied yet. */
+    void clear() {
+        frames.removeFrameCallback(this);
+        fold.clear();
+        windowStartNanos = -1;
+        scheduled.set(false);
+    }
+
+    private void enqueued() {
+        enqueuedCount.incrementAndGet();
+        if (scheduled.compareAndSet(false, true)) {
+            frames.postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (windowStartNanos < 0) windowStartNanos = frameTimeNanos;
+        if (frameTimeNanos - windowStartNanos < windowNanos) {
+            // still inside the burst window; look again next frame
+            frames.postFrameCallback(this);
+            return;
+        }
+        windowStartNanos = -1;
+        scheduled.set(false);
+
+        if (fold.drainTo(sink)) appliedCount++;
+    }
+
+    int getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    int getAppliedCount() {
+        return appliedCount;
+    }
+}
@@ -0,0 +1,46 @@
+package com.code2consciousness.dimme;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import com.code2consciousness.dimme.core.DimState;
+
+/**
+ * In-process control surface of {@link DimOverlayService}, handed out through its local
+ * Binder. Calls apply directly instead of going through startService/onStartCommand.
+ * After {@link #close()} every call is ignored until the service is started again: a
+ * bound client keeps a closed service alive, but it stays off screen and out of the
+ * notification shade.
+ *
+ * All methods must be called on the main thread.
+ */
+interface DimControl {
+
+    /** Sets the dim level in per-mille (see {@link com.code2consciousness.dimme.core.DimLevel}). */
+    void setDim(int level);
+
+    /** Moves the dim level by delta per-mille; ignored while paused. */
+    void nudge(int delta);
+
+    void togglePause();
+
+    void setPaused(boolean paused);
+
+    /**
+     * Marks the next change as a Quick Settings tap made at tapNanos (elapsedRealtimeNanos);
+     * the service times it to the first frame that shows it.
+     */
+    void noteTileTap(long tapNanos);
+
+    /** Shows the floating control bar; the app in the foreground uses this same bar. */
+    void showControls();
+
+    void hideControls();
+
+    /** Removes the overlay and controls and stops the service (once no client is bound). */
+    void close();
+
+    DimState getState();
+
+    /** Observes state changes for the lifetime of the owner; see {@link DimStateStore#observe}. */
+    DimStateStore.Registration observe(LifecycleOwner owner, DimStateStore.Listener listener);
+}
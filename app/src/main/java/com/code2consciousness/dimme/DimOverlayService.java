@@ -1,33 +1,29 @@
 package com.code2consciousness.dimme;
 
+import android.app.AppOpsManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.app.Service;
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.pm.ServiceInfo;
-import android.graphics.Color;
+import android.content.res.Configuration;
 import android.graphics.PixelFormat;
-import android.graphics.PorterDuff;
-import android.graphics.drawable.GradientDrawable;
+import android.os.Binder;
 import android.os.Build;
 import android.os.IBinder;
+import android.os.Looper;
+import android.os.StrictMode;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.util.DisplayMetrics;
+import android.view.Choreographer;
 import android.view.Gravity;
-import android.view.MotionEvent;
 import android.view.View;
 import android.view.WindowInsets;
 import android.view.WindowInsetsController;
 import android.view.WindowManager;
 import android.widget.FrameLayout;
-import android.widget.ImageButton;
-import android.widget.LinearLayout;
-import android.widget.SeekBar;
 import android.widget.Toast;
 import android.widget.RemoteViews;
 import android.util.Log;
@@ -36,7 +32,17 @@ import android.content.pm.PackageManager;
 import androidx.core.content.ContextCompat;
 
 import androidx.core.app.NotificationCompat;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import androidx.core.app.ServiceCompat;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.code2consciousness.dimme.core.DimAnimator;
+import com.code2consciousness.dimme.core.DimLevel;
+import com.code2consciousness.dimme.core.DimSplit;
+import com.code2consciousness.dimme.core.DimState;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Locale;
 
 public class DimOverlayService extends Service {
 
@@ -44,98 +50,278 @@ public class DimOverlayService extends Service {
 
     private WindowManager windowManager;
     private FrameLayout dimOverlayView;
-
-    // Floating controls (moved from MainActivity)
-    private LinearLayout floatingControls;
+    private WindowManager.LayoutParams dimOverlayParams;
+    private boolean dimOverlayAttached;
+    private DimRenderer dimRenderer;
+    // The renderer picked by configuration; QoS tiers may swap in QOS_RENDERER for a while
+    private DimRenderer.Strategy configuredRenderer;
+    // A background color change is one solid fill in our own process; window alpha would
+    // cost an updateViewLayout binder call and a WindowManager relayout per change. It is
+    // also the default, so the swap only happens when another renderer is configured.
+    private static final DimRenderer.Strategy QOS_RENDERER = DimRenderer.Strategy.BACKGROUND_COLOR;
+    private QosController qosController;
+    private QosController.Tier qosTier = QosController.Tier.FULL;
+    // How a dim is shared between the backlight and the overlay alpha (overlay only by default)
+    private DimSplit dimSplit = DimSplit.OVERLAY_ONLY;
+    // dimSplit with the overlay limit of the current renderer; what rendering uses
+    private DimSplit activeSplit = DimSplit.OVERLAY_ONLY;
+    private BacklightController backlight;
+
+    // Floating controls (moved from MainActivity). Built once on first show and kept for the
+    // service's lifetime; hiding only detaches the window.
+    private ControlBarView floatingControls;
     private WindowManager.LayoutParams floatingParams;
-    // Generated ids for child views so we can find them reliably across OEMs
-    private final int floatingSeekBarId = View.generateViewId();
-    private final int floatingPauseButtonId = View.generateViewId();
-    // Direct references to floating child views for robust updates
-    private SeekBar floatingSeekBar;
-    private ImageButton floatingPauseButton;
-
-    static float currentDim = 0.5f;
-    private boolean isPaused = false;
-    private BroadcastReceiver pauseStateReceiver;
+    private boolean floatingAttached;
+    private int floatingBuildCount;
+    private FloatingDragController floatingDragController;
+    private final DisplayMetrics displayMetrics = new DisplayMetrics();
+    private FloatingControlsBinder floatingBinder;
+    // Idle auto-hide into an edge handle; the bar's x is kept here while collapsed
+    private FloatingIdleController floatingIdle;
+    private int expandedControlsX;
+
+    // Overlay and control view updates are applied once per frame, in a fixed order
+    private RenderScheduler renderScheduler;
+    // Every overlay alpha change (nudges, pause/resume, startup) is eased through this
+    private final DimAnimator dimAnimator = new DimAnimator(0f);
+
+    // Shared dim state (level, pause, visibility); the service renders every change
+    private DimStateStore stateStore;
+    private DimStateStore.Registration stateRegistration;
+    private DimState renderedState;
+    private DimCommandQueue commandQueue;
+
+    // Persisted session; restoredSession is only kept until the first command
+    private SessionStore sessionStore;
+    private SessionRecord restoredSession;
+    private boolean hasControlsPosition;
+    private int controlsX;
+    private int controlsY;
 
     private static final String CHANNEL_ID = "dim_overlay_channel";
-
-    // Public actions (kept same)
-    public static final String ACTION_SEND_CURRENT_DIM = "com.code2consciousness.dimme.ACTION_SEND_CURRENT_DIM";
-    public static final String ACTION_REQUEST_DIM = "com.code2consciousness.dimme.ACTION_REQUEST_DIM";
-    public static final String ACTION_PAUSE_STATE_CHANGED = "com.code2consciousness.dimme.ACTION_PAUSE_STATE_CHANGED";
-    public static final String EXTRA_IS_PAUSED = "is_paused";
+    private static final int NOTIFICATION_ID = 1;
 
     // Internal service actions
-    private static final String ACTION_SHOW_FLOATING = "SHOW_FLOATING";
-
-    private boolean isAppVisible = false;
-
-    public void setAppVisible(boolean visible) {
-        isAppVisible = visible;
-    }
+    static final String ACTION_SHOW_FLOATING = "SHOW_FLOATING";
+    // elapsedRealtimeNanos of the Quick Settings tap that started the service
+    static final String EXTRA_TILE_TAP_NANOS = "tile_tap_nanos";
+
+    private final Control control = new Control();
+    private boolean inForeground;
+    // Set by close(): a bound client keeps the service alive, but it must not come back on
+    // screen (or post notifications) until it is started again
+    private boolean closed;
+
+    private final android.os.Handler mainHandler = new android.os.Handler(android.os.Looper.getMainLooper());
+    private final StartupTrace startupTrace = new StartupTrace();
+    private final ServiceMetrics metrics = new ServiceMetrics();
+    // slow main-looper messages; on by default in debug builds, "dumpsys ... jank on" otherwise
+    private JankWatchdog jankWatchdog;
+    // Windows are detached while the screen is off or dozing and come back on wake-up.
+    // The dim state is left alone; shows and hides while suspended only change resume*.
+    private ScreenStateMonitor screenMonitor;
+    private boolean screenSuspended;
+    private boolean resumeOverlay;
+    private boolean resumeControls;
+    private long resumeSignalNanos;
+    private final Choreographer.FrameCallback resumeFrameCallback = frameTimeNanos -> metrics.record(
+            ServiceMetrics.Timer.SCREEN_RESUME_TO_FRAME, SystemClock.elapsedRealtimeNanos() - resumeSignalNanos);
+    // arrival time of the oldest dim command whose alpha has not been rendered yet
+    private long pendingCommandNanos;
+    // Quick Settings tap whose change has not been rendered yet
+    private long tileTapNanos;
+    private static final long COMMAND_LATENCY_TIMEOUT_NANOS = 1_000_000_000L;
+    private AppOpsManager.OnOpChangedListener overlayOpListener;
+    private int overlayAttachAttempts;
+    private boolean holdNotificationUpdates;
+    private static final int MAX_OVERLAY_ATTACH_ATTEMPTS = 3;
+
+    private NotificationPublisher notificationPublisher;
+    private NotificationResources notificationResources;
+    // RemoteViews, bitmaps and PendingIntents are built off the main thread
+    private NotificationWorker notificationWorker;
 
     @Override
     public IBinder onBind(Intent intent) {
-        return null;
+        return control;
     }
 
     @Override
     public void onCreate() {
         super.onCreate();
+        startupTrace.begin();
 
         createNotificationChannel();
+        configuredRenderer = DimRenderer.Strategy.fromName(
+                getString(R.string.dim_renderer), DimRenderer.Strategy.BACKGROUND_COLOR);
+        dimRenderer = DimRenderer.create(configuredRenderer);
+        dimSplit = new DimSplit(getResources().getInteger(R.integer.dim_backlight_reduction_percent) / 100f);
+        updateActiveSplit();
+        backlight = new BacklightController(getContentResolver(), mainHandler, new BacklightController.Access() {
+            @Override
+            public boolean canWriteSettings() {
+                return DimOverlayService.this.canWriteSettings();
+            }
 
-        LocalBroadcastManager.getInstance(this).registerReceiver(new BroadcastReceiver() {
             @Override
-            public void onReceive(Context context, Intent intent) {
-                if ("APP_VISIBLE".equals(intent.getAction())) {
-                    isAppVisible = true;
-                    removeFloatingControls(); // hide service floating UI if app is in foreground
-                }
+            public void onWindowBrightnessChanged() {
+                pushDimOverlayParams();
             }
-        }, new IntentFilter("APP_VISIBLE"));
+        });
+        notificationWorker = new NotificationWorker(this::buildNotification,
+                getSystemService(NotificationManager.class), NOTIFICATION_ID);
+        notificationPublisher = new NotificationPublisher(mainHandler,
+                NotificationPublisher.DEFAULT_MIN_INTERVAL_MS,
+                notificationWorker::submit);
+
+        stateStore = DimStateStore.getInstance();
+        jankWatchdog = new JankWatchdog(Looper.getMainLooper(), stateStore);
+        if (BuildConfig.DEBUG) {
+            enableStrictMode();
+            jankWatchdog.install();
+        }
+
+        // Restore the last session synchronously so a restart comes back at the same level.
+        // Only the first service in a process takes it; otherwise the in-memory state is newer.
+        sessionStore = new SessionStore(getFilesDir());
+        SessionRecord session = stateStore.claimSession() ? sessionStore.read() : null;
+        if (session != null) {
+            restoredSession = session;
+            stateStore.setDimLevel(session.dimLevel);
+            if (session.hasOriginalBrightness()) {
+                // the last process died with the system brightness lowered
+                backlight.adopt(session.originalBrightness, session.originalBrightnessMode);
+            }
+            if (session.hasControlsPosition) {
+                hasControlsPosition = true;
+                controlsX = session.controlsX;
+                controlsY = session.controlsY;
+            }
+        }
 
-        pauseStateReceiver = new BroadcastReceiver() {
+        renderScheduler = new RenderScheduler(FrameScheduler.choreographer(), new RenderScheduler.Target() {
             @Override
-            public void onReceive(Context context, Intent intent) {
-                if (ACTION_PAUSE_STATE_CHANGED.equals(intent.getAction())) {
-                    isPaused = intent.getBooleanExtra(EXTRA_IS_PAUSED, false);
-                    float dimAmount = isPaused ? 0f : currentDim;
-                    updateDim(dimAmount);
-                    updateNotification();
-                    // update floating UI pause icon if visible
-                    updateFloatingPauseState();
-                }
+            public void renderDim(long frameTimeNanos) {
+                updateDim(dimAnimator.step(frameTimeNanos));
+                recordCommandLatency();
+                recordTileLatency();
+                if (dimAnimator.isRunning()) renderScheduler.invalidate(RenderScheduler.DIRTY_DIM);
             }
-        };
-        LocalBroadcastManager.getInstance(this)
-                .registerReceiver(pauseStateReceiver, new IntentFilter(ACTION_PAUSE_STATE_CHANGED));
-    }
 
-    private void setPauseState(boolean paused) {
-        isPaused = paused;
-        // Update dim overlay
-        float dimAmount = isPaused ? 0f : currentDim;
-        updateDim(dimAmount);
+            @Override
+            public void renderControls() {
+                if (floatingBinder != null) floatingBinder.bind(stateStore.get());
+            }
 
-        // Update notification on main thread
-        new android.os.Handler(getMainLooper()).post(() -> {
-            updateNotification();
+            @Override
+            public void renderLayout() {
+                relayoutFloatingControls();
+            }
         });
 
-        // Update floating controls on main thread
-        new android.os.Handler(getMainLooper()).post(() -> {
-            updateFloatingPauseState();
+        renderedState = stateStore.get();
+        stateRegistration = stateStore.addListener(this::onDimStateChanged, true);
+        commandQueue = new DimCommandQueue(FrameScheduler.choreographer(),
+                DimCommandQueue.DEFAULT_WINDOW_NANOS, new DimCommandQueue.Sink() {
+            @Override
+            public boolean isPaused() {
+                return stateStore.get().paused;
+            }
+
+            @Override
+            public void apply(int levelDelta, boolean togglePause) {
+                stateStore.applyCommand(levelDelta, togglePause);
+            }
         });
 
-        // Broadcast state change
-        sendPauseBroadcast(isPaused);
+        screenMonitor = new ScreenStateMonitor(this, mainHandler, this::onScreenVisibilityChanged);
+        screenMonitor.start();
+        // started with the screen off (e.g. a sticky restart at night): attach on wake-up
+        screenSuspended = !screenMonitor.isVisible();
+
+        qosController = new QosController(mainHandler, QosController.DEFAULT_STEP_DOWN_HOLD_MS,
+                this::applyQosTier);
+        qosController.start(this);
+    }
+
+    // Battery saver or heat: trade smoothness for less work per change
+    private void applyQosTier(QosController.Tier tier) {
+        qosTier = tier;
+        dimAnimator.setDurationNanos(tier.animations ? DimAnimator.DEFAULT_DURATION_NANOS : 0);
+        notificationPublisher.setMinIntervalMs(tier.notificationIntervalMs);
+        renderScheduler.setMinFrameIntervalNanos(tier.frameIntervalNanos);
+        if (floatingDragController != null) floatingDragController.setMinFrameIntervalNanos(tier.frameIntervalNanos);
+        DimRenderer.Strategy renderer = tier.cheapRenderer ? QOS_RENDERER : configuredRenderer;
+        if (renderer != dimRenderer.getStrategy()) switchDimRenderer(renderer);
+    }
+
+    QosController getQosController() {
+        return qosController;
+    }
+
+    // Applies a state change to the overlay, floating controls and notification.
+    private void onDimStateChanged(DimState state) {
+        DimState previous = renderedState;
+        renderedState = state;
+        if (closed) return;
+
+        int dirty = 0;
+        if (state.overlayAlpha() != previous.overlayAlpha()) {
+            dimAnimator.animateTo(state.overlayAlpha(), frameClockNanos());
+            dirty |= RenderScheduler.DIRTY_DIM;
+        }
+        // progress only changes the bar's contents; the window keeps its size
+        if (state.paused != previous.paused
+                || (floatingControls != null && floatingControls.getProgress() != state.seekBarProgress())) {
+            dirty |= RenderScheduler.DIRTY_CONTROLS;
+        }
+        if (!screenSuspended) renderScheduler.invalidate(dirty);
+        // MainActivity resuming or pausing is in neither the notification nor the session
+        if (state.withAppVisible(previous.appVisible).equals(previous)) return;
+        requestNotificationUpdate();
+        saveSession();
+    }
+
+    private void saveSession() {
+        DimState state = stateStore.get();
+        boolean lowered = backlight.hasSystemCapture();
+        sessionStore.save(new SessionRecord(state.dimLevel, state.paused, state.controlsVisible,
+                hasControlsPosition, controlsX, controlsY,
+                lowered ? backlight.getOriginalBrightness() : SessionRecord.NO_BRIGHTNESS,
+                lowered ? backlight.getOriginalMode() : SessionRecord.NO_BRIGHTNESS));
+    }
+
+    // START_STICKY restart: bring back pause, overlay and controls right away. The overlay
+    // goes back at its final alpha; the user never asked for it, so there is nothing to fade.
+    private void restoreSession(SessionRecord session) {
+        stateStore.setPaused(session.paused);
+        DimState state = stateStore.get();
+        if (!state.paused) {
+            // showDimOverlay marks the overlay phase once the window is added
+            dimAnimator.jumpTo(state.overlayAlpha());
+            showDimOverlay(state.overlayAlpha());
+        } else {
+            // no overlay to dim for: give back a brightness the last process left lowered
+            restoreBacklight();
+            startupTrace.mark(StartupTrace.Phase.OVERLAY);
+        }
+        if (session.controlsVisible) control.showControls();
+        startupTrace.mark(StartupTrace.Phase.CONTROLS);
+        requestNotificationUpdate();
+        startupTrace.mark(StartupTrace.Phase.NOTIFICATION);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            return handleStartCommand(intent);
+        } finally {
+            metrics.record(ServiceMetrics.Timer.ON_START_COMMAND, SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
+
+    private int handleStartCommand(Intent intent) {
         // On Android 13+ we must have POST_NOTIFICATIONS runtime permission to show notifications.
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             if (ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
@@ -149,115 +335,245 @@ public class DimOverlayService extends Service {
             }
         }
 
-        // Always start as foreground first
-        if (!isAppVisible) {
-            showFloatingControls();
-        }
-        try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-                startForeground(1, createNotification(), ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
-            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-                startForeground(1, createNotification(), ServiceInfo.FOREGROUND_SERVICE_TYPE_NONE);
-            } else {
-                startForeground(1, createNotification());
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "startForeground failed", e);
+        // a start reopens a closed session; ensureForeground promotes it again
+        closed = false;
+
+        // Promote once with a lightweight notification; the full notification is
+        // published after the overlay is up (see runStartupSequence)
+        boolean promoted = ensureForeground();
+
+        if (intent == null && restoredSession != null) {
+            SessionRecord session = restoredSession;
+            restoredSession = null;
+            restoreSession(session);
+            return START_STICKY;
         }
+        restoredSession = null;
 
-        // Make sure the notification is pushed/updated immediately so action buttons render
-        updateNotification();
+        if (intent != null && intent.hasExtra(EXTRA_TILE_TAP_NANOS)) {
+            control.noteTileTap(intent.getLongExtra(EXTRA_TILE_TAP_NANOS, 0));
+        }
 
         String action = intent != null ? intent.getAction() : null;
 
         if (action != null) {
-            switch (action) {
-                case "CLOSE":
-                    removeFloatingControls();
-                    removeDimOverlay();
-                    stopSelf();
-                    LocalBroadcastManager.getInstance(this)
-                            .sendBroadcast(new Intent("com.code2consciousness.dimme.ACTION_CLOSE_APP"));
-                    return START_NOT_STICKY;
-
-                case "PAUSE":
-                    isPaused = !isPaused;
-                    updateDim(isPaused ? 0f : currentDim);
-                    sendPauseBroadcast(isPaused);
-                    updateNotification();
-                    updateFloatingPauseState();
-                    return START_STICKY;
+            int result = handleAction(intent, action);
+            // a notification tap that started a dead service still needs the full notification
+            if (promoted && result == START_STICKY) requestNotificationUpdate();
+            return result;
+        }
 
-                case "UPDATE_DIM":
-                    currentDim = intent.getFloatExtra("dim_amount", currentDim);
-                    if (!isPaused) updateDim(currentDim);
-                    updateNotification();
-                    return START_STICKY;
+        // Default behavior: show dim overlay and floating controls
+        runStartupSequence();
+        return START_STICKY;
+    }
 
-                case "PLUS":
-                    if (!isPaused) {
-                        currentDim -= 0.05f;
-                        if (currentDim < 0f) currentDim = 0f;
-                        updateDim(currentDim);
-                        notifyDimChange();
-                        updateNotification();
-                        updateFloatingSeekBar();
-                    }
+    private int handleAction(Intent intent, String action) {
+        switch (action) {
+            case "CLOSE":
+                control.close();
+                return START_NOT_STICKY;
+
+            // Notification taps are queued so bursts apply as one net change
+            case "PAUSE":
+                noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_NOTIFICATION);
+                commandQueue.enqueueTogglePause();
+                return START_STICKY;
+
+            case "UPDATE_DIM":
+                float dimAmount = intent.getFloatExtra("dim_amount",
+                        DimLevel.toAlpha(stateStore.get().dimLevel));
+                noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_NOTIFICATION);
+                stateStore.setDimLevel(DimLevel.fromAlpha(dimAmount));
+                return START_STICKY;
+
+            case "PLUS":
+                noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_NOTIFICATION);
+                commandQueue.enqueueNudge(-DimLevel.STEP);
+                return START_STICKY;
+
+            case "MINUS":
+                noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_NOTIFICATION);
+                commandQueue.enqueueNudge(DimLevel.STEP);
+                return START_STICKY;
+
+            case ACTION_SHOW_FLOATING:
+                if (!Settings.canDrawOverlays(this)) {
+                    Toast.makeText(this, "Overlay permission required. Open the app to grant permission.", Toast.LENGTH_SHORT).show();
                     return START_STICKY;
+                }
+                control.showControls();
+                return START_STICKY;
+        }
+        return START_STICKY;
+    }
 
-                case "MINUS":
-                    if (!isPaused) {
-                        currentDim += 0.05f;
-                        if (currentDim > 1f) currentDim = 1f;
+    // --- STARTUP ---
+    // foreground (done by onStartCommand) -> overlay as soon as windows can be added
+    // -> floating controls -> full notification. Each phase is recorded in startupTrace.
+    private void runStartupSequence() {
+        if (Settings.canDrawOverlays(this)) {
+            attachStartupWindows();
+            return;
+        }
+        // Wait for the overlay permission instead of guessing with a fixed delay
+        if (overlayOpListener == null) {
+            AppOpsManager appOps = getSystemService(AppOpsManager.class);
+            overlayOpListener = (op, packageName) -> mainHandler.post(() -> {
+                if (overlayOpListener != null && Settings.canDrawOverlays(this)) {
+                    stopWatchingOverlayPermission();
+                    attachStartupWindows();
+                }
+            });
+            appOps.startWatchingMode(AppOpsManager.OPSTR_SYSTEM_ALERT_WINDOW, getPackageName(), overlayOpListener);
+        }
+        // the notification does not depend on the overlay
+        requestNotificationUpdate();
+        startupTrace.mark(StartupTrace.Phase.NOTIFICATION);
+    }
 
-                        updateDim(currentDim);
-                        notifyDimChange();
-                        updateNotification();
-                        updateFloatingSeekBar();
-                    }
-                    return START_STICKY;
+    private void attachStartupWindows() {
+        // state changes while attaching must not build the notification ahead of the windows
+        holdNotificationUpdates = true;
+        DimState state = stateStore.get();
+        try {
+            if (!state.paused) fadeInDimOverlay(state.overlayAlpha());
+        } catch (RuntimeException e) {
+            // e.g. BadTokenException while the system is still settling; retry next frame
+            Log.w(TAG, "Overlay not ready, retrying", e);
+            holdNotificationUpdates = false;
+            if (++overlayAttachAttempts <= MAX_OVERLAY_ATTACH_ATTEMPTS) {
+                FrameScheduler.choreographer().postFrameCallback(frameTimeNanos -> attachStartupWindows());
+                return;
+            }
+            // a session that cannot dim must not sit in the notification shade pretending to
+            Log.e(TAG, "Overlay could not be added, stopping", e);
+            overlayAttachAttempts = 0;
+            startupTrace.fail(StartupTrace.Phase.OVERLAY);
+            control.close();
+            return;
+        }
+        overlayAttachAttempts = 0;
+        // attached ones were marked by showDimOverlay
+        if (state.paused) startupTrace.mark(StartupTrace.Phase.OVERLAY);
 
-                case "REQUEST_CURRENT_DIM":
-                    Intent dimIntent = new Intent(ACTION_SEND_CURRENT_DIM);
-                    dimIntent.putExtra("dim_amount", currentDim);
-                    LocalBroadcastManager.getInstance(this).sendBroadcast(dimIntent);
-                    return START_STICKY;
+        control.showControls();
+        startupTrace.mark(StartupTrace.Phase.CONTROLS);
 
-                case "REQUEST_DIM":
-                    notifyDimChange();
-                    return START_STICKY;
+        holdNotificationUpdates = false;
+        requestNotificationUpdate();
+        startupTrace.mark(StartupTrace.Phase.NOTIFICATION);
+    }
 
-                case ACTION_SHOW_FLOATING:
-                    if (!Settings.canDrawOverlays(this)) {
-                        Toast.makeText(this, "Overlay permission required. Open the app to grant permission.", Toast.LENGTH_SHORT).show();
-                        return START_STICKY;
-                    }
-                    if (!isAppVisible) showFloatingControls();
-                    return START_STICKY;
+    private void stopWatchingOverlayPermission() {
+        if (overlayOpListener == null) return;
+        getSystemService(AppOpsManager.class).stopWatchingMode(overlayOpListener);
+        overlayOpListener = null;
+    }
+
+    StartupTrace getStartupTrace() {
+        return startupTrace;
+    }
+
+    /** Returns true if this call promoted the service. */
+    private boolean ensureForeground() {
+        if (inForeground) return false;
+        try {
+            Notification notification = buildStartupNotification();
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+                startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_NONE);
+            } else {
+                startForeground(NOTIFICATION_ID, notification);
             }
+            inForeground = true;
+            // the startup notification has no controls; make sure the next update posts
+            notificationPublisher.invalidate();
+            startupTrace.mark(StartupTrace.Phase.FOREGROUND);
+            return true;
+        } catch (Exception e) {
+            Log.e(TAG, "startForeground failed", e);
+            return false;
         }
+    }
 
-        // Default behavior: start foreground and show dim overlay
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU)
-            startForeground(1, createNotification(), ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE);
-        else
-            startForeground(1, createNotification());
+    /** Direct, in-process control path used by the binder, the floating controls and onStartCommand. */
+    private final class Control extends Binder implements DimControl {
+        @Override
+        public void setDim(int level) {
+            if (closed) return;
+            noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_ACTIVITY);
+            stateStore.setDimLevel(level);
+        }
 
-        // Refresh the notification right after starting foreground to encourage immediate rendering of actions
-        updateNotification();
+        @Override
+        public void nudge(int delta) {
+            if (closed) return;
+            noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_ACTIVITY);
+            if (!stateStore.get().paused) stateStore.nudgeDimLevel(delta);
+        }
 
-        new android.os.Handler(getMainLooper()).postDelayed(() -> {
-            if (!isPaused) showDimOverlay(currentDim);
-            if (!isAppVisible) showFloatingControls();
-        }, 500); // half-second delay
+        @Override
+        public void togglePause() {
+            if (closed) return;
+            noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_ACTIVITY);
+            stateStore.togglePaused();
+        }
 
-        return START_STICKY;
-    }
+        @Override
+        public void setPaused(boolean paused) {
+            if (closed) return;
+            noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_ACTIVITY);
+            stateStore.setPaused(paused);
+        }
 
-    private void notifyDimChange() {
-        Intent intent = new Intent("com.code2consciousness.dimme.ACTION_DIM_CHANGED");
-        intent.putExtra("dim_amount", currentDim);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+        @Override
+        public void noteTileTap(long tapNanos) {
+            if (closed) return;
+            metrics.increment(ServiceMetrics.Counter.TILE_TAPS);
+            tileTapNanos = tapNanos;
+        }
+
+        @Override
+        public void showControls() {
+            if (closed) return;
+            // the only control bar; MainActivity asks for it instead of adding its own
+            showFloatingControls();
+        }
+
+        @Override
+        public void hideControls() {
+            if (closed) return;
+            removeFloatingControls();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            removeFloatingControls();
+            removeDimOverlay();
+            commandQueue.clear();
+            renderScheduler.cancel();
+            dimAnimator.jumpTo(0f); // the next show fades in from clear
+            tileTapNanos = 0;
+            if (notificationPublisher != null) notificationPublisher.cancel();
+            notificationWorker.cancelAndRemove();
+            // bound clients may keep the service alive; drop the notification right away
+            ServiceCompat.stopForeground(DimOverlayService.this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            inForeground = false;
+            stopSelf();
+        }
+
+        @Override
+        public DimState getState() {
+            return stateStore.get();
+        }
+
+        @Override
+        public DimStateStore.Registration observe(LifecycleOwner owner, DimStateStore.Listener listener) {
+            return stateStore.observe(owner, listener);
+        }
     }
 
     private void createNotificationChannel() {
@@ -276,111 +592,114 @@ public class DimOverlayService extends Service {
         }
     }
 
-    private Notification createNotification() {
-        return buildNotification();
+    // Minimal notification for startForeground: no RemoteViews, bitmaps or PendingIntents
+    // to build before the overlay is attached.
+    private Notification buildStartupNotification() {
+        return new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_menu_view)
+                .setContentTitle("DimMe")
+                .setContentText("Screen dimming active")
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setCategory(NotificationCompat.CATEGORY_SERVICE)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .build();
     }
 
-    private void updateNotification() {
-        NotificationManager manager = getSystemService(NotificationManager.class);
-        manager.notify(1, buildNotification());
+    // Routes notification refreshes through the publisher so unchanged states are
+    // dropped and bursts (e.g. SeekBar drags) are coalesced.
+    private void requestNotificationUpdate() {
+        if (notificationPublisher != null && !holdNotificationUpdates && !screenSuspended) {
+            notificationPublisher.submit(stateStore.get());
+        }
     }
 
-    private Notification buildNotification() {
-        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) flags |= PendingIntent.FLAG_IMMUTABLE;
+    boolean isClosed() {
+        return closed;
+    }
 
-        // Changed: tapping notification will open the main app activity (safer/best-practice)
-        PendingIntent openServicePending = PendingIntent.getService(
-                this,
-                0,
-                new Intent(this, DimOverlayService.class).setAction(ACTION_SHOW_FLOATING),
-                flags
-        );
+    SessionStore getSessionStore() {
+        return sessionStore;
+    }
 
-        PendingIntent pausePending = PendingIntent.getService(this, 1,
-                new Intent(this, DimOverlayService.class).setAction("PAUSE"), flags);
+    // shared by the main thread (configuration changes) and the notification worker
+    synchronized NotificationResources getNotificationResources() {
+        if (notificationResources == null) notificationResources = new NotificationResources(this);
+        return notificationResources;
+    }
 
-        PendingIntent stopPending = PendingIntent.getService(this, 2,
-                new Intent(this, DimOverlayService.class).setAction("CLOSE"), flags);
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        if (notificationResources != null) {
+            notificationResources.onConfigurationChanged(newConfig);
+            // cached icons changed, make sure the next update is posted
+            notificationPublisher.invalidate();
+            requestNotificationUpdate();
+        }
+        // the seekbar width follows the screen width (rotation, resize)
+        if (floatingControls != null) renderScheduler.invalidate(RenderScheduler.DIRTY_LAYOUT);
+    }
 
-        PendingIntent plusPending = PendingIntent.getService(this, 3,
-                new Intent(this, DimOverlayService.class).setAction("PLUS"), flags);
+    Notification buildNotification() {
+        return buildNotification(stateStore.get());
+    }
 
-        PendingIntent minusPending = PendingIntent.getService(this, 4,
-                new Intent(this, DimOverlayService.class).setAction("MINUS"), flags);
+    // Runs on the notification worker; everything it reads comes from the snapshot
+    Notification buildNotification(DimState state) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        try {
+            return createNotification(state);
+        } finally {
+            metrics.record(ServiceMetrics.Timer.BUILD_NOTIFICATION, SystemClock.elapsedRealtimeNanos() - start);
+        }
+    }
 
-        Intent openAppIntent = new Intent(this, MainActivity.class);
-        openAppIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
-        PendingIntent openAppPending = PendingIntent.getActivity(
-                this,
-                0,
-                openAppIntent,
-                Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ?
-                        PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE :
-                        PendingIntent.FLAG_UPDATE_CURRENT
-        );
+    private Notification createNotification(DimState state) {
+        NotificationResources res = getNotificationResources();
+        boolean isPaused = state.paused;
 
         RemoteViews layout = new RemoteViews(getPackageName(), R.layout.notification_dimme);
 
-        layout.setOnClickPendingIntent(R.id.btn_pause, pausePending);
-        layout.setOnClickPendingIntent(R.id.btn_close, stopPending);
+        layout.setOnClickPendingIntent(R.id.btn_pause, res.pausePending);
+        layout.setOnClickPendingIntent(R.id.btn_close, res.closePending);
         // Only enable plus/minus buttons when not paused
         if (!isPaused) {
-            layout.setOnClickPendingIntent(R.id.btn_plus, plusPending);
-            layout.setOnClickPendingIntent(R.id.btn_minus, minusPending);
+            layout.setOnClickPendingIntent(R.id.btn_plus, res.plusPending);
+            layout.setOnClickPendingIntent(R.id.btn_minus, res.minusPending);
         }
-        layout.setOnClickPendingIntent(R.id.icon_dimme, openServicePending);
+        layout.setOnClickPendingIntent(R.id.icon_dimme, res.showFloatingPending);
 
         // NOTE: RemoteViews.setImageViewResource will not reliably load vector drawables
         // on all devices because the system process inflates the RemoteViews without
-        // AppCompat vector support. Render the drawable to a Bitmap and use
-        // setImageViewBitmap to ensure the icon updates correctly.
+        // AppCompat vector support. Use the cached tinted bitmap instead.
+        int pauseIcon = isPaused ? R.drawable.ic_play : R.drawable.ic_pause;
+        int pauseTint = isPaused ? res.resumeColor : res.accentColor;
+        android.graphics.Bitmap pauseBitmap = null;
         try {
-            android.graphics.drawable.Drawable d = ContextCompat.getDrawable(this, isPaused ? R.drawable.ic_play : R.drawable.ic_pause);
-            if (d != null) {
-                // Tint the drawable before drawing so RemoteViews shows the expected color.
-                int tintColor = isPaused ? Color.GREEN : Color.parseColor("#FFC107");
-                try {
-                    android.graphics.drawable.Drawable wrapped = androidx.core.graphics.drawable.DrawableCompat.wrap(d).mutate();
-                    androidx.core.graphics.drawable.DrawableCompat.setTint(wrapped, tintColor);
-                    d = wrapped;
-                } catch (Throwable ignored) {
-                }
-
-                android.graphics.Bitmap bmp;
-                if (d instanceof android.graphics.drawable.BitmapDrawable) {
-                    bmp = ((android.graphics.drawable.BitmapDrawable) d).getBitmap();
-                } else {
-                    int w = d.getIntrinsicWidth() > 0 ? d.getIntrinsicWidth() : 48;
-                    int h = d.getIntrinsicHeight() > 0 ? d.getIntrinsicHeight() : 48;
-                    bmp = android.graphics.Bitmap.createBitmap(w, h, android.graphics.Bitmap.Config.ARGB_8888);
-                    android.graphics.Canvas canvas = new android.graphics.Canvas(bmp);
-                    d.setBounds(0, 0, canvas.getWidth(), canvas.getHeight());
-                    d.draw(canvas);
-                }
-                layout.setImageViewBitmap(R.id.btn_pause, bmp);
-            } else {
-                // fallback to resource if drawable lookup failed for any reason
-                layout.setImageViewResource(R.id.btn_pause, isPaused ? R.drawable.ic_play : R.drawable.ic_pause);
-            }
-        } catch (Exception ex) {
-            // last-resort fallback
-            layout.setImageViewResource(R.id.btn_pause, isPaused ? R.drawable.ic_play : R.drawable.ic_pause);
+            pauseBitmap = res.getTintedBitmap(pauseIcon, pauseTint);
+        } catch (Exception ignored) {
+        }
+        if (pauseBitmap != null) {
+            layout.setImageViewBitmap(R.id.btn_pause, pauseBitmap);
+        } else {
+            // fallback to resource if drawable lookup failed for any reason
+            layout.setImageViewResource(R.id.btn_pause, pauseIcon);
         }
         // Attempt to color the pause icon; keep this as an additional hint but the bitmap above
         // already contains the drawable color. Some OEMs may ignore setInt on RemoteViews.
-        layout.setInt(R.id.btn_pause, "setColorFilter", isPaused ? Color.GREEN : Color.parseColor("#FFC107"));
+        layout.setInt(R.id.btn_pause, "setColorFilter", pauseTint);
         // color the close icon/view
-        layout.setInt(R.id.btn_close, "setColorFilter", Color.parseColor("#FFC107"));
+        layout.setInt(R.id.btn_close, "setColorFilter", res.accentColor);
 
-        boolean atMin = currentDim <= 0.0f;
-        boolean atMax = currentDim >= 1.0f;
+        boolean atMin = DimLevel.isAtMin(state.dimLevel);
+        boolean atMax = DimLevel.isAtMax(state.dimLevel);
 
         // Set button colors - gray out when paused or at limits
         layout.setInt(R.id.btn_minus, "setColorFilter",
-            (isPaused || atMax) ? Color.LTGRAY : Color.parseColor("#FFC107"));
+            (isPaused || atMax) ? res.disabledColor : res.accentColor);
         layout.setInt(R.id.btn_plus, "setColorFilter",
-            (isPaused || atMin) ? Color.LTGRAY : Color.parseColor("#FFC107"));
+            (isPaused || atMin) ? res.disabledColor : res.accentColor);
 
         // Build notification with DecoratedCustomViewStyle and explicit actions so buttons show immediately
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
@@ -405,35 +724,32 @@ public class DimOverlayService extends Service {
 
     // --- DIM OVERLAY (fullscreen) ---
     private void showDimOverlay(float dimAmount) {
+        if (screenSuspended) {
+            resumeOverlay = true;
+            stateStore.setOverlayVisible(true);
+            return;
+        }
         if (windowManager == null) windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
-        if (dimOverlayView != null) windowManager.removeView(dimOverlayView);
-
-        dimOverlayView = new FrameLayout(this);
-        dimOverlayView.setBackgroundColor(0xFF000000);
-        dimOverlayView.setAlpha(dimAmount);
-
-        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.MATCH_PARENT,
-                WindowManager.LayoutParams.MATCH_PARENT,
-                Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                    ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                    : WindowManager.LayoutParams.TYPE_SYSTEM_ALERT,
-                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
-                        WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE |
-                        WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
-                        WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS |
-                        WindowManager.LayoutParams.FLAG_FULLSCREEN,
-                PixelFormat.TRANSLUCENT
-        );
+        float overlayAlpha = activeSplit.overlayAlpha(dimAmount);
+        if (dimOverlayAttached) {
+            // update the existing window in place instead of re-adding it
+            boolean brightnessChanged = applyBacklight(dimAmount);
+            if (dimRenderer.apply(windowManager, dimOverlayView, dimOverlayParams, overlayAlpha)) {
+                metrics.increment(ServiceMetrics.Counter.WM_UPDATE);
+            } else if (brightnessChanged) {
+                pushDimOverlayParams();
+            }
+            return;
+        }
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
-            params.layoutInDisplayCutoutMode = WindowManager.LayoutParams.LAYOUT_IN_DISPLAY_CUTOUT_MODE_SHORT_EDGES;
+        if (dimOverlayView == null) {
+            dimOverlayView = new FrameLayout(this);
+            dimOverlayParams = createDimOverlayParams();
         }
+        dimRenderer.prepare(dimOverlayView, dimOverlayParams, overlayAlpha);
+        applyBacklight(dimAmount);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
-            params.flags |= WindowManager.LayoutParams.FLAG_DRAWS_SYSTEM_BAR_BACKGROUNDS |
-                          WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
-
             dimOverlayView.setSystemUiVisibility(
                 View.SYSTEM_UI_FLAG_LAYOUT_STABLE |
                 View.SYSTEM_UI_FLAG_LAYOUT_HIDE_NAVIGATION |
@@ -443,11 +759,16 @@ public class DimOverlayService extends Service {
                 View.SYSTEM_UI_FLAG_IMMERSIVE_STICKY
             );
 
-            windowManager.addView(dimOverlayView, params);
+            windowManager.addView(dimOverlayView, dimOverlayParams);
+            metrics.increment(ServiceMetrics.Counter.WM_ADD);
+            dimOverlayAttached = true;
+            // time to first dim ends here, at the first add that succeeded
+            startupTrace.mark(StartupTrace.Phase.OVERLAY);
+            stateStore.setOverlayVisible(true);
 
             // Post the system UI flags update to ensure it takes effect
             dimOverlayView.post(() -> {
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R && dimOverlayView != null) {
                     final WindowInsetsController insetsController = dimOverlayView.getWindowInsetsController();
                     if (insetsController != null) {
                         insetsController.setSystemBarsBehavior(WindowInsetsController.BEHAVIOR_SHOW_TRANSIENT_BARS_BY_SWIPE);
@@ -455,6 +776,78 @@ public class DimOverlayService extends Service {
                     }
                 }
             });
+        } else {
+            windowManager.addView(dimOverlayView, dimOverlayParams);
+            metrics.increment(ServiceMetrics.Counter.WM_ADD);
+            dimOverlayAttached = true;
+            startupTrace.mark(StartupTrace.Phase.OVERLAY);
+            stateStore.setOverlayVisible(true);
+        }
+    }
+
+    // A new or released capture is saved with the session: a process kill must not lose the
+    // user's brightness while the system setting holds our lowered value
+    private boolean applyBacklight(float dimAmount) {
+        boolean wasCaptured = backlight.hasSystemCapture();
+        boolean changed = backlight.apply(activeSplit.backlight(dimAmount), dimOverlayParams);
+        if (backlight.hasSystemCapture() != wasCaptured) saveSession();
+        return changed;
+    }
+
+    // A params-only change (screenBrightness) on the attached overlay
+    private void pushDimOverlayParams() {
+        if (!dimOverlayAttached) return;
+        try {
+            windowManager.updateViewLayout(dimOverlayView, dimOverlayParams);
+            metrics.increment(ServiceMetrics.Counter.WM_UPDATE);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    private void restoreBacklight() {
+        boolean wasCaptured = backlight.hasSystemCapture();
+        backlight.restore(dimOverlayParams);
+        if (wasCaptured) saveSession();
+    }
+
+    // Attaches the overlay at the animator's current value and eases it to the target
+    private void fadeInDimOverlay(float dimAmount) {
+        showDimOverlay(dimAnimator.getValue());
+        dimAnimator.animateTo(dimAmount, frameClockNanos());
+        renderScheduler.invalidate(RenderScheduler.DIRTY_DIM);
+    }
+
+    // Choreographer frame times use CLOCK_MONOTONIC, the same clock as uptimeMillis
+    private static long frameClockNanos() {
+        return SystemClock.uptimeMillis() * 1_000_000L;
+    }
+
+    DimAnimator getDimAnimator() {
+        return dimAnimator;
+    }
+
+    private WindowManager.LayoutParams createDimOverlayParams() {
+        WindowManager.LayoutParams params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                    : WindowManager.LayoutParams.TYPE_SYSTEM_ALERT,
+                WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE |
+                        WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE |
+                        WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
+                        WindowManager.LayoutParams.FLAG_LAYOUT_NO_LIMITS |
+                        WindowManager.LayoutParams.FLAG_FULLSCREEN,
+                PixelFormat.TRANSLUCENT
+        );
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            params.layoutInDisplayCutoutMode = WindowManager.LayoutParams.LAYOUT_IN_DISPLAY_CUTOUT_MODE_SHORT_EDGES;
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            params.flags |= WindowManager.LayoutParams.FLAG_DRAWS_SYSTEM_BAR_BACKGROUNDS |
+                          WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
         } else {
             params.systemUiVisibility = View.SYSTEM_UI_FLAG_LAYOUT_STABLE
                     | View.SYSTEM_UI_FLAG_LAYOUT_FULLSCREEN
@@ -462,361 +855,496 @@ public class DimOverlayService extends Service {
                     | View.SYSTEM_UI_FLAG_FULLSCREEN
                     | View.SYSTEM_UI_FLAG_HIDE_NAVIGATION
                     | View.SYSTEM_UI_FLAG_IMMERSIVE_STICKY;
-
-            windowManager.addView(dimOverlayView, params);
         }
-
         params.gravity = Gravity.TOP | Gravity.START;
+        return params;
     }
 
     public void updateDim(float dimAmount) {
-        if (dimOverlayView != null) dimOverlayView.setAlpha(dimAmount);
-        else showDimOverlay(dimAmount);
+        showDimOverlay(dimAmount);
     }
 
-    private void removeDimOverlay() {
-        if (windowManager != null && dimOverlayView != null) {
+    /**
+     * Switches how the overlay is drawn; an attached window is updated in place. While a QoS
+     * tier uses the cheap renderer the choice is kept and applied when the tier ends.
+     */
+    void setDimRenderer(DimRenderer.Strategy strategy) {
+        configuredRenderer = strategy;
+        if (!qosTier.cheapRenderer) switchDimRenderer(strategy);
+    }
+
+    private void switchDimRenderer(DimRenderer.Strategy strategy) {
+        if (dimRenderer != null && dimRenderer.getStrategy() == strategy) return;
+        dimRenderer = DimRenderer.create(strategy);
+        updateActiveSplit();
+        if (dimOverlayAttached) {
+            // the value on screen, not the target: a running fade continues from there
+            dimRenderer.prepare(dimOverlayView, dimOverlayParams, activeSplit.overlayAlpha(dimAnimator.getValue()));
             try {
-                windowManager.removeView(dimOverlayView);
+                windowManager.updateViewLayout(dimOverlayView, dimOverlayParams);
+                metrics.increment(ServiceMetrics.Counter.WM_UPDATE);
             } catch (IllegalArgumentException ignored) {
             }
-            dimOverlayView = null;
         }
     }
 
+    DimRenderer.Strategy getDimRendererStrategy() {
+        return dimRenderer.getStrategy();
+    }
+
+    /** Changes how much of the dim comes from the backlight; an attached overlay follows at once. */
+    void setDimSplit(DimSplit split) {
+        dimSplit = split;
+        updateActiveSplit();
+        if (dimOverlayAttached) updateDim(dimAnimator.getValue());
+    }
+
+    // Android 12+ judges touch occlusion by the window's LayoutParams.alpha, so the limit only
+    // applies to the renderer that drives it; the others keep the window opaque to the
+    // system either way, and capping their content would only take away the darkest levels.
+    private void updateActiveSplit() {
+        boolean limited = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                && dimRenderer != null && dimRenderer.getStrategy() == DimRenderer.Strategy.WINDOW_ALPHA;
+        activeSplit = dimSplit.withMaxOverlayAlpha(limited ? DimSplit.MAX_OVERLAY_ALPHA : 1f);
+    }
+
+    /** The split rendering uses: the configured one with the renderer's overlay limit. */
+    DimSplit getActiveSplit() {
+        return activeSplit;
+    }
+
+    DimSplit getDimSplit() {
+        return dimSplit;
+    }
+
+    WindowManager.LayoutParams getDimOverlayParams() {
+        return dimOverlayParams;
+    }
+
+    BacklightController getBacklight() {
+        return backlight;
+    }
+
+    boolean canWriteSettings() {
+        return Settings.System.canWrite(this);
+    }
+
+    // Also the brightness restore for CLOSE, onTaskRemoved and onDestroy
+    private void removeDimOverlay() {
+        resumeOverlay = false;
+        restoreBacklight();
+        detachDimOverlay();
+        stateStore.setOverlayVisible(false);
+    }
+
+    private void detachDimOverlay() {
+        if (windowManager == null || !dimOverlayAttached) return;
+        try {
+            windowManager.removeView(dimOverlayView);
+            metrics.increment(ServiceMetrics.Counter.WM_REMOVE);
+        } catch (IllegalArgumentException ignored) {
+        }
+        dimOverlayAttached = false;
+    }
+
     // --- FLOATING CONTROLS (seekbar + pause + stop + drag) ---
     private void showFloatingControls() {
+        long start = SystemClock.elapsedRealtimeNanos();
+        attachFloatingControls();
+        metrics.record(ServiceMetrics.Timer.SHOW_FLOATING_CONTROLS, SystemClock.elapsedRealtimeNanos() - start);
+    }
+
+    private void attachFloatingControls() {
         if (!Settings.canDrawOverlays(this)) {
             // cannot show overlay without permission
             return;
         }
+        if (screenSuspended) {
+            resumeControls = true;
+            stateStore.setControlsVisible(true);
+            return;
+        }
 
         if (windowManager == null) windowManager = (WindowManager) getSystemService(WINDOW_SERVICE);
+        if (floatingControls == null) buildFloatingControls();
 
-        if (floatingControls != null && floatingControls.getParent() != null) {
+        if (floatingAttached) {
             // already shown; ensure visible
             floatingControls.setVisibility(View.VISIBLE);
+            stateStore.setControlsVisible(true);
+            floatingIdle.start();
             return;
         }
 
-        // create UI programmatically (kept visually same as your MainActivity)
-        floatingControls = new LinearLayout(this);
-        floatingControls.setOrientation(LinearLayout.VERTICAL);
-        floatingControls.setBackgroundColor(0x00FFFFFF); // transparent container
-        floatingControls.setPadding(0,0,0,0);
-
-        LinearLayout inner = new LinearLayout(this);
-        inner.setOrientation(LinearLayout.HORIZONTAL);
-        inner.setPadding(15, 2, 15, 2);
-
-        GradientDrawable bgDrawable = new GradientDrawable();
-        bgDrawable.setColor(Color.parseColor("#AA444444"));
-        bgDrawable.setCornerRadius(96f);
-        bgDrawable.setStroke(3, Color.parseColor("#FFC107"));
-        inner.setBackground(bgDrawable);
-        inner.setGravity(Gravity.CENTER_VERTICAL);
-
-        SeekBar seekBar = new SeekBar(this);
-        seekBar.setMax(100);
-        try {
-            seekBar.setProgressDrawable(getResources().getDrawable(R.drawable.custom_seekbar));
-            seekBar.getThumb().setColorFilter(Color.YELLOW, PorterDuff.Mode.SRC_IN);
-        } catch (Exception ignored) {
-        }
-        LinearLayout.LayoutParams seekParams = new LinearLayout.LayoutParams(500, WindowManager.LayoutParams.WRAP_CONTENT);
-        seekParams.gravity = Gravity.CENTER_VERTICAL;
-        seekBar.setLayoutParams(seekParams);
-        seekBar.setProgress((int) ((1 - currentDim) * 100));
-        seekBar.setId(floatingSeekBarId); // Set generated ID
-        // keep reference for robust updates
-        floatingSeekBar = seekBar;
-
-        ImageButton pauseButton = new ImageButton(this);
-        pauseButton.setImageResource(isPaused ? R.drawable.ic_play : R.drawable.ic_pause);
-        pauseButton.setBackgroundColor(Color.TRANSPARENT);
-        pauseButton.setColorFilter(isPaused ? Color.GREEN : Color.parseColor("#FFC107"), PorterDuff.Mode.SRC_IN);
-        LinearLayout.LayoutParams pauseParams = new LinearLayout.LayoutParams(90, 90);
-        pauseParams.leftMargin = 16;
-        pauseButton.setLayoutParams(pauseParams);
-        pauseButton.setId(floatingPauseButtonId); // Set generated ID
-        // keep reference for robust updates
-        floatingPauseButton = pauseButton;
-
-        ImageButton splitter = new ImageButton(this);
-        splitter.setImageResource(android.R.drawable.divider_horizontal_bright);
-        splitter.setBackgroundColor(Color.TRANSPARENT);
-        LinearLayout.LayoutParams splitterParams = new LinearLayout.LayoutParams(24, 60);
-        splitter.setLayoutParams(splitterParams);
-
-        ImageButton stopButton = new ImageButton(this);
-        stopButton.setImageResource(android.R.drawable.ic_lock_power_off);
-        stopButton.setBackgroundColor(Color.TRANSPARENT);
-        stopButton.setColorFilter(Color.parseColor("#FFC107"), PorterDuff.Mode.SRC_IN);
-        stopButton.setScaleX(1.5f);
-        stopButton.setScaleY(1.5f);
-        LinearLayout.LayoutParams btnParams = new LinearLayout.LayoutParams(100, 60);
-        btnParams.leftMargin = 32;
-        stopButton.setLayoutParams(btnParams);
-
-        ImageButton minimizeButton = new ImageButton(this);
-        minimizeButton.setImageResource(android.R.drawable.ic_menu_close_clear_cancel);
-        minimizeButton.setBackgroundColor(Color.TRANSPARENT);
-        minimizeButton.setColorFilter(Color.LTGRAY, PorterDuff.Mode.SRC_IN);
-
-        inner.addView(minimizeButton);
-        inner.addView(seekBar);
-        inner.addView(pauseButton);
-        inner.addView(splitter);
-        inner.addView(stopButton);
-
-        floatingControls.addView(inner);
-
-        // Setup floating params
-        floatingParams = new WindowManager.LayoutParams(
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                WindowManager.LayoutParams.WRAP_CONTENT,
-                Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
-                    ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
-                    : WindowManager.LayoutParams.TYPE_PHONE,
-                WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
-                        WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL,
-                PixelFormat.TRANSLUCENT
-        );
-
-        // Handle display metrics for different screen sizes
-        WindowManager wm = (WindowManager) getSystemService(Context.WINDOW_SERVICE);
-        DisplayMetrics metrics = new DisplayMetrics();
-        wm.getDefaultDisplay().getMetrics(metrics);
-
-        // Adjust seekbar width based on screen width
-        int seekBarWidth = Math.min(500, (int)(metrics.widthPixels * 0.7));
-        if (seekBar != null) {
-            LinearLayout.LayoutParams adjustedSeekParams = (LinearLayout.LayoutParams) seekBar.getLayoutParams();
-            adjustedSeekParams.width = seekBarWidth;
-            seekBar.setLayoutParams(adjustedSeekParams);
+        // the views were kept while detached; bring them up to date before attaching
+        floatingControls.setVisibility(View.VISIBLE);
+        floatingBinder.bind(stateStore.get());
+        if (hasControlsPosition) {
+            floatingParams.x = controlsX;
+            floatingParams.y = controlsY;
         }
+        floatingDragController.syncFromParams();
 
         // Add to window
         try {
             windowManager.addView(floatingControls, floatingParams);
+            metrics.increment(ServiceMetrics.Counter.WM_ADD);
+            floatingAttached = true;
+            stateStore.setControlsVisible(true);
+            floatingIdle.start();
         } catch (Exception e) {
             Log.e(TAG, "addView floatingControls failed", e);
         }
+    }
 
-        // SeekBar listener
-        seekBar.setOnSeekBarChangeListener(new SeekBar.OnSeekBarChangeListener() {
+    // Builds the control bar, its window params and listeners. Runs once per service.
+    private void buildFloatingControls() {
+        floatingBuildCount++;
+
+        // one flat custom-drawn view (background, track, thumb and icons)
+        floatingControls = new ControlBarView(this);
+        floatingControls.setSeekWidth(floatingSeekBarWidth());
+        floatingControls.setListener(new ControlBarView.Listener() {
             @Override
-            public void onProgressChanged(SeekBar sb, int progress, boolean fromUser) {
-                float dimAmount = (100 - progress) / 100f;
-                currentDim = dimAmount;  // always update
-                if (!isPaused) {
-                    updateDim(dimAmount); // only apply overlay if not paused
-                    updateNotification();
+            public void onProgressChanged(int progress, boolean fromUser) {
+                // always update the level; the overlay only follows it while not paused
+                if (fromUser) {
+                    noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_SEEKBAR);
+                    stateStore.setDimLevel(DimLevel.fromProgress(progress));
                 }
             }
 
             @Override
-            public void onStartTrackingTouch(SeekBar sb) {
+            public void onPauseClicked() {
+                // direct call; the state listener updates the icon
+                noteDimCommand(ServiceMetrics.Counter.DIM_CHANGES_SEEKBAR);
+                stateStore.togglePaused();
             }
 
             @Override
-            public void onStopTrackingTouch(SeekBar sb) {
+            public void onStopClicked() {
+                control.close();
             }
-        });
 
-        // Pause / Play toggle
-        pauseButton.setOnClickListener(v -> {
-            // toggle via service action to keep consistent
-            Intent pauseIntent = new Intent(this, DimOverlayService.class).setAction("PAUSE");
-            startService(pauseIntent);
-            // update icon locally immediately to the expected new state (do not change service state here)
-            boolean expectedPaused = !isPaused;
-            pauseButton.setImageResource(expectedPaused ? R.drawable.ic_play : R.drawable.ic_pause);
-            pauseButton.setColorFilter(expectedPaused ? Color.GREEN : Color.parseColor("#FFC107"), PorterDuff.Mode.SRC_IN);
+            @Override
+            public void onMinimizeClicked() {
+                floatingIdle.stop();
+                floatingControls.setVisibility(View.GONE);
+                stateStore.setControlsVisible(false);
+                Toast.makeText(DimOverlayService.this, "DimMe minimized. Tap the notification to reopen.", Toast.LENGTH_SHORT).show();
+            }
         });
 
-        // Stop overlay
-        stopButton.setOnClickListener(v -> {
-            Intent stopIntent = new Intent(this, DimOverlayService.class).setAction("CLOSE");
-            startService(stopIntent);
-        });
+        // icon, tint and progress are set by the binder (on show and on every state change)
+        floatingBinder = new FloatingControlsBinder(floatingControls);
 
-        // Minimize floating controls
-        minimizeButton.setOnClickListener(v -> {
-            if (floatingControls != null) {
-                floatingControls.setVisibility(View.GONE);
-                Toast.makeText(this, "DimMe minimized. Tap the notification to reopen.", Toast.LENGTH_SHORT).show();
-            }
+        // Setup floating params
+        floatingParams = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                    ? WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY
+                    : WindowManager.LayoutParams.TYPE_PHONE,
+                WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN |
+                        WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL,
+                PixelFormat.TRANSLUCENT
+        );
+
+        // Drag handling on the bar's background: at most one window update per frame
+        floatingDragController = new FloatingDragController(windowManager, floatingControls,
+                floatingParams, FrameScheduler.choreographer());
+        floatingDragController.setMinFrameIntervalNanos(qosTier.frameIntervalNanos);
+        floatingDragController.setOnMovedListener((x, y) -> {
+            hasControlsPosition = true;
+            controlsX = x;
+            controlsY = y;
+            saveSession();
         });
+        floatingControls.setDragListener(floatingDragController);
 
-        // Drag handling
-        floatingControls.setOnTouchListener(new View.OnTouchListener() {
-            private int initialX, initialY;
-            private float initialTouchX, initialTouchY;
+        // sees every touch before the bar's own hit testing
+        floatingIdle = new FloatingIdleController(mainHandler,
+                getResources().getInteger(R.integer.floating_idle_timeout_ms), new FloatingIdleController.Target() {
+            @Override
+            public void collapse() {
+                collapseFloatingControls();
+            }
 
             @Override
-            public boolean onTouch(View v, MotionEvent event) {
-                if (floatingParams == null) return false;
-                switch (event.getAction()) {
-                    case MotionEvent.ACTION_DOWN:
-                        // Make interactive
-                        floatingParams.flags &= ~WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
-                        try {
-                            windowManager.updateViewLayout(floatingControls, floatingParams);
-                        } catch (Exception ignored) {
-                        }
-                        initialX = floatingParams.x;
-                        initialY = floatingParams.y;
-                        initialTouchX = event.getRawX();
-                        initialTouchY = event.getRawY();
-                        return true;
-
-                    case MotionEvent.ACTION_MOVE:
-                        floatingParams.x = initialX + (int) (event.getRawX() - initialTouchX);
-                        floatingParams.y = initialY + (int) (event.getRawY() - initialTouchY);
-                        try {
-                            windowManager.updateViewLayout(floatingControls, floatingParams);
-                        } catch (Exception ignored) {
-                        }
-                        return true;
-
-                    case MotionEvent.ACTION_UP:
-                        // revert
-                        floatingParams.flags |= WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
-                        try {
-                            windowManager.updateViewLayout(floatingControls, floatingParams);
-                        } catch (Exception ignored) {
-                        }
-                        // Accessibility: dispatch a click so performClick is handled
-                        v.performClick();
-                        return true;
-                }
-                return false;
+            public void expand() {
+                expandFloatingControls();
             }
         });
-        // make it clickable for accessibility
-        floatingControls.setClickable(true);
-        Log.d(TAG, "Floating controls created and added");
+        floatingControls.setOnTouchListener(floatingIdle);
+        Log.d(TAG, "Floating controls created");
     }
 
-    private void updateFloatingPauseState() {
-        if (floatingControls == null) return;
-        // Use generated id to find the pause ImageButton reliably and run on main thread
-        new android.os.Handler(getMainLooper()).post(() -> {
-            try {
-                // Update pause button
-                ImageButton pb = floatingPauseButton != null ? floatingPauseButton : (ImageButton) floatingControls.findViewById(floatingPauseButtonId);
-                if (pb != null) {
-                    Log.d(TAG, "Updating pause button state: isPaused=" + isPaused);
-                    pb.setImageResource(isPaused ? R.drawable.ic_play : R.drawable.ic_pause);
-                    pb.setColorFilter(isPaused ? Color.GREEN : Color.parseColor("#FFC107"), PorterDuff.Mode.SRC_IN);
-                    pb.invalidate();
-                }
+    // Idle: shrink the bar to a handle on the nearest side edge with one window update
+    private void collapseFloatingControls() {
+        if (!floatingAttached) return;
+        floatingDragController.cancel();
+        expandedControlsX = floatingParams.x;
+        floatingControls.setCollapsed(true);
+        windowManager.getDefaultDisplay().getMetrics(displayMetrics);
+        // no gravity: x is the offset of the window's center from the screen's center
+        int edge = Math.max(0, displayMetrics.widthPixels - ControlBarView.HANDLE_WIDTH) / 2;
+        floatingParams.x = expandedControlsX < 0 ? -edge : edge;
+        updateFloatingLayout();
+        floatingDragController.syncFromParams();
+        metrics.increment(ServiceMetrics.Counter.CONTROLS_COLLAPSES);
+    }
 
-                // Find and update plus/minus buttons
-                boolean atMin = currentDim <= 0.0f;
-                boolean atMax = currentDim >= 1.0f;
-
-                // Update all buttons in the layout
-                for (int i = 0; i < floatingControls.getChildCount(); i++) {
-                    View child = floatingControls.getChildAt(i);
-                    if (child instanceof LinearLayout) {
-                        LinearLayout inner = (LinearLayout) child;
-                        for (int j = 0; j < inner.getChildCount(); j++) {
-                            View innerChild = inner.getChildAt(j);
-                            if (innerChild instanceof ImageButton) {
-                                ImageButton btn = (ImageButton) innerChild;
-                                // Check button type by its image resource
-                                if (btn.getDrawable() != null) {
-                                    if (btn.getDrawable().getConstantState().equals(
-                                            getResources().getDrawable(android.R.drawable.ic_input_add).getConstantState())) {
-                                        // Plus button
-                                        btn.setEnabled(!isPaused);
-                                        btn.setColorFilter(
-                                            (isPaused || atMin) ? Color.LTGRAY : Color.parseColor("#FFC107"),
-                                            PorterDuff.Mode.SRC_IN
-                                        );
-                                    } else if (btn.getDrawable().getConstantState().equals(
-                                            getResources().getDrawable(android.R.drawable.ic_input_delete).getConstantState())) {
-                                        // Minus button
-                                        btn.setEnabled(!isPaused);
-                                        btn.setColorFilter(
-                                            (isPaused || atMax) ? Color.LTGRAY : Color.parseColor("#FFC107"),
-                                            PorterDuff.Mode.SRC_IN
-                                        );
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            } catch (Exception ignored) {
-            }
-        });
+    private void expandFloatingControls() {
+        floatingControls.setCollapsed(false);
+        floatingParams.x = expandedControlsX;
+        updateFloatingLayout();
+        floatingDragController.syncFromParams();
     }
 
-     private void updateFloatingSeekBar() {
-         updateFloatingSeekBar(3);
-     }
+    // Detached or minimized while collapsed: the next show starts from the full bar
+    private void resetFloatingIdle() {
+        boolean collapsed = floatingControls.isCollapsed();
+        floatingIdle.stop();
+        if (!collapsed) return;
+        floatingControls.setCollapsed(false);
+        floatingParams.x = expandedControlsX;
+        floatingDragController.syncFromParams();
+    }
 
-    // Retry-aware updater: attempts tries with small delays to handle OEM redraw/attach delays
-    private void updateFloatingSeekBar(int attempts) {
-        if (attempts <= 0) return;
-        if (floatingControls == null) return;
+    private void updateFloatingLayout() {
+        try {
+            windowManager.updateViewLayout(floatingControls, floatingParams);
+            metrics.increment(ServiceMetrics.Counter.WM_UPDATE);
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    FloatingIdleController getFloatingIdle() {
+        return floatingIdle;
+    }
+
+    View getFloatingControlsView() {
+        return floatingControls;
+    }
+
+    int getFloatingBuildCount() {
+        return floatingBuildCount;
+    }
 
-        new android.os.Handler(getMainLooper()).post(() -> {
+    // Adjust seekbar width based on screen width
+    private int floatingSeekBarWidth() {
+        windowManager.getDefaultDisplay().getMetrics(displayMetrics);
+        return Math.min(500, (int) (displayMetrics.widthPixels * 0.7));
+    }
+
+    // The only path that pushes the controls window through updateViewLayout
+    private void relayoutFloatingControls() {
+        if (floatingControls == null) return;
+        int width = floatingSeekBarWidth();
+        if (floatingControls.getSeekWidth() == width) return;
+        floatingControls.setSeekWidth(width);
+        if (floatingAttached) {
             try {
-                SeekBar sb = floatingSeekBar != null ? floatingSeekBar : (SeekBar) floatingControls.findViewById(floatingSeekBarId);
-                if (sb != null) {
-                   int progress = (int) ((1 - currentDim) * 100);
-                    Log.d(TAG, "Setting floating seekbar progress to " + progress + " (currentDim=" + currentDim + ") attempts="+  attempts);
-                    try {
-                        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                            sb.setProgress(progress, false);
-                        }
-                    } catch (NoSuchMethodError ignored) {
-                        sb.setProgress(progress);
-                    }
-                    sb.postInvalidateOnAnimation();
-                    sb.refreshDrawableState();
-                    try {
-                        if (windowManager != null && floatingControls.getParent() != null) {
-                            floatingControls.requestLayout();
-                            windowManager.updateViewLayout(floatingControls, floatingParams);
-                        }
-                    } catch (Exception ex) {
-                        Log.d(TAG, "updateViewLayout failed while refreshing seekbar", ex);
-                    }
-                } else {
-                    Log.d(TAG, "floating seekbar instance is null when updating (attempts=" + attempts + ")");
-                    if (attempts > 1) {
-                        new android.os.Handler(getMainLooper()).postDelayed(() -> updateFloatingSeekBar(attempts - 1), 120);
-                    }
-                }
-            } catch (Exception ex) {
-                Log.d(TAG, "Exception in updateFloatingSeekBar", ex);
-                if (attempts > 1) new android.os.Handler(getMainLooper()).postDelayed(() -> updateFloatingSeekBar(attempts - 1), 120);
+                windowManager.updateViewLayout(floatingControls, floatingParams);
+                metrics.increment(ServiceMetrics.Counter.WM_UPDATE);
+            } catch (IllegalArgumentException ignored) {
             }
-        });
+        }
+    }
+
+    FloatingControlsBinder getFloatingBinder() {
+        return floatingBinder;
+    }
+
+    NotificationWorker getNotificationWorker() {
+        return notificationWorker;
+    }
+
+    NotificationPublisher getNotificationPublisher() {
+        return notificationPublisher;
+    }
+
+    RenderScheduler getRenderScheduler() {
+        return renderScheduler;
+    }
+
+    // Detaches the window; the views, params and listeners are kept for the next show
+    private void removeFloatingControls() {
+        resumeControls = false;
+        detachFloatingControls();
+        stateStore.setControlsVisible(false);
+    }
+
+    private void detachFloatingControls() {
+        if (windowManager == null || !floatingAttached) return;
+        floatingDragController.cancel();
+        resetFloatingIdle();
+        try {
+            windowManager.removeView(floatingControls);
+            metrics.increment(ServiceMetrics.Counter.WM_REMOVE);
+        } catch (IllegalArgumentException ignored) {
+        }
+        floatingAttached = false;
+        Log.d(TAG, "Floating controls detached");
+    }
+
+    // --- SCREEN OFF ---
+    private void onScreenVisibilityChanged(boolean visible) {
+        if (visible) {
+            resumeAfterScreenOff();
+        } else {
+            suspendForScreenOff();
+        }
+    }
+
+    // Nothing is visible: give back both window surfaces and stop notification work,
+    // including a pending trailing post and queued attach retries
+    private void suspendForScreenOff() {
+        if (screenSuspended) return;
+        long start = SystemClock.elapsedRealtimeNanos();
+        screenSuspended = true;
+        resumeOverlay = dimOverlayAttached;
+        resumeControls = floatingAttached;
+        overlayAttachAttempts = 0;
+        renderScheduler.cancel();
+        notificationPublisher.cancel();
+        notificationWorker.cancel();
+        detachFloatingControls();
+        detachDimOverlay();
+        metrics.increment(ServiceMetrics.Counter.SCREEN_SUSPENDS);
+        metrics.record(ServiceMetrics.Timer.SCREEN_SUSPEND, SystemClock.elapsedRealtimeNanos() - start);
     }
 
-     private void removeFloatingControls() {
-         if (windowManager != null && floatingControls != null) {
-             try {
-                 windowManager.removeView(floatingControls);
-             } catch (IllegalArgumentException ignored) {
-             }
-             floatingControls = null;
-             floatingSeekBar = null;
-             floatingPauseButton = null;
-            Log.d(TAG, "Floating controls removed and references cleared");
-         }
-     }
+    // Runs on the first wake-up signal, before the display shows a frame. The overlay goes
+    // back at its final alpha: fading in from clear would flash the undimmed screen.
+    private void resumeAfterScreenOff() {
+        if (!screenSuspended) return;
+        long start = SystemClock.elapsedRealtimeNanos();
+        screenSuspended = false;
+        DimState state = stateStore.get();
+        dimAnimator.jumpTo(state.overlayAlpha());
+        if (resumeOverlay) showDimOverlay(state.overlayAlpha());
+        if (resumeControls) showFloatingControls();
+        resumeOverlay = false;
+        resumeControls = false;
+        // a post may have been dropped on suspend, and the state may have changed since
+        notificationPublisher.invalidate();
+        requestNotificationUpdate();
+        metrics.record(ServiceMetrics.Timer.SCREEN_RESUME, SystemClock.elapsedRealtimeNanos() - start);
+        resumeSignalNanos = start;
+        FrameScheduler.choreographer().postFrameCallback(resumeFrameCallback);
+    }
+
+    boolean isScreenSuspended() {
+        return screenSuspended;
+    }
+
+    private static void enableStrictMode() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectAll()
+                .penaltyLog()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectAll()
+                .penaltyLog()
+                .build());
+    }
+
+    JankWatchdog getJankWatchdog() {
+        return jankWatchdog;
+    }
+
+    // Counts a dim command by source and starts its command-to-alpha measurement
+    private void noteDimCommand(ServiceMetrics.Counter source) {
+        metrics.increment(source);
+        if (pendingCommandNanos == 0) pendingCommandNanos = SystemClock.elapsedRealtimeNanos();
+    }
+
+    private void recordCommandLatency() {
+        if (pendingCommandNanos == 0) return;
+        long latency = SystemClock.elapsedRealtimeNanos() - pendingCommandNanos;
+        pendingCommandNanos = 0;
+        // a command that changed nothing (e.g. PLUS while paused) has no alpha to wait for
+        if (latency < COMMAND_LATENCY_TIMEOUT_NANOS) {
+            metrics.record(ServiceMetrics.Timer.COMMAND_TO_ALPHA, latency);
+        }
+    }
+
+    private void recordTileLatency() {
+        if (tileTapNanos == 0) return;
+        long latency = SystemClock.elapsedRealtimeNanos() - tileTapNanos;
+        tileTapNanos = 0;
+        if (latency < COMMAND_LATENCY_TIMEOUT_NANOS) {
+            metrics.record(ServiceMetrics.Timer.TILE_TAP_TO_DIM, latency);
+        }
+    }
 
-    private void sendPauseBroadcast(boolean paused) {
-        Intent intent = new Intent(ACTION_PAUSE_STATE_CHANGED);
-        intent.putExtra(EXTRA_IS_PAUSED, paused);
-        LocalBroadcastManager.getInstance(this).sendBroadcast(intent);
+    ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    // adb shell dumpsys activity service com.code2consciousness.dimme/.DimOverlayService
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        if (args != null && args.length == 2 && "jank".equals(args[0])) {
+            // runs on a binder thread; install on the looper being watched
+            boolean on = "on".equals(args[1]);
+            mainHandler.post(() -> {
+                if (on) jankWatchdog.install(); else jankWatchdog.uninstall();
+            });
+            writer.println("jank watchdog " + (on ? "on" : "off"));
+            return;
+        }
+        DimState state = stateStore.get();
+        writer.print("state: ");
+        writer.println(state);
+
+        metrics.dump(writer, "");
+        // the drag controller keeps its own count of window moves
+        writer.print("  wm_update_drag=");
+        writer.println(floatingDragController != null ? floatingDragController.getLayoutUpdateCount() : 0);
+
+        writer.println("notification:");
+        writer.print("  posted=");
+        writer.println(notificationWorker.getPostedCount());
+        writer.print("  built=");
+        writer.println(notificationWorker.getBuiltCount());
+        writer.print("  stale=");
+        writer.println(notificationWorker.getStaleCount());
+        writer.print("  submitted=");
+        writer.println(notificationPublisher.getPostedCount());
+        writer.print("  suppressed=");
+        writer.println(notificationPublisher.getSuppressedCount());
+
+        writer.println("frames:");
+        writer.print("  applied=");
+        writer.println(renderScheduler.getFramesApplied());
+        writer.print("  merged=");
+        writer.println(renderScheduler.getUpdatesMerged());
+
+        writer.println("commands:");
+        writer.print("  enqueued=");
+        writer.println(commandQueue.getEnqueuedCount());
+        writer.print("  applied=");
+        writer.println(commandQueue.getAppliedCount());
+
+        screenMonitor.dump(writer, "");
+        writer.print("  suspended=");
+        writer.println(screenSuspended);
+
+        qosController.dump(writer, "");
+        writer.print("  renderer=");
+        writer.println(dimRenderer.getStrategy().name().toLowerCase(Locale.ROOT));
+
+        writer.println("backlight:");
+        writer.print("  max_reduction=");
+        writer.println(dimSplit.getMaxBacklightReduction());
+        writer.print("  max_overlay_alpha=");
+        writer.println(activeSplit.getMaxOverlayAlpha());
+        backlight.dump(writer, "");
+
+        startupTrace.dump(writer, "");
+        jankWatchdog.dump(writer, "");
     }
 
     @Override
@@ -830,9 +1358,22 @@ public class DimOverlayService extends Service {
     @Override
     public void onDestroy() {
         super.onDestroy();
+        // no state change from here on may reach the notification: stop listening, drop the
+        // trailing post, then stop the worker, all before the windows come down
+        if (stateRegistration != null) stateRegistration.remove();
+        if (notificationPublisher != null) notificationPublisher.cancel();
+        if (notificationWorker != null) notificationWorker.quit();
+        if (commandQueue != null) commandQueue.clear();
+        if (renderScheduler != null) renderScheduler.cancel();
+        stopWatchingOverlayPermission();
+        if (jankWatchdog != null) jankWatchdog.uninstall();
+        if (screenMonitor != null) screenMonitor.stop();
+        if (qosController != null) qosController.stop();
         removeDimOverlay();
         removeFloatingControls();
-        if (pauseStateReceiver != null)
-            LocalBroadcastManager.getInstance(this).unregisterReceiver(pauseStateReceiver);
+        if (sessionStore != null) {
+            saveSession();
+            sessionStore.close();
+        }
     }
 }
@@ -0,0 +1,168 @@
+package com.code2consciousness.dimme;
+
+import android.graphics.Color;
+import android.view.View;
+import android.view.WindowManager;
+
+/**
+ * Strategy for turning a dim amount (0..1) into pixels on the full-screen overlay window.
+ *
+ * The overlay window is added once; renderers only mutate the existing view or its
+ * LayoutParams in place and never remove and re-add the window.
+ */
+abstract class DimRenderer {
+
+    enum Strategy {
+        /** View.setAlpha on a black background (original behavior). */
+        VIEW_ALPHA,
+        /** Black background color with the alpha baked in; no view-level alpha. */
+        BACKGROUND_COLOR,
+        /** Window-level LayoutParams.alpha, composited by the system. */
+        WINDOW_ALPHA,
+        /** FLAG_DIM_BEHIND with LayoutParams.dimAmount on a transparent window. */
+        DIM_BEHIND;
+
+        static Strategy fromName(String name, Strategy fallback) {
+            if (name == null) return fallback;
+            for (Strategy s : values()) {
+                if (s.name().equalsIgnoreCase(name)) return s;
+            }
+            return fallback;
+        }
+    }
+
+    static DimRenderer create(Strategy strategy) {
+        switch (strategy) {
+            case VIEW_ALPHA:
+                return new ViewAlpha();
+            case WINDOW_ALPHA:
+                return new WindowAlpha();
+            case DIM_BEHIND:
+                return new DimBehind();
+            case BACKGROUND_COLOR:
+            default:
+                return new BackgroundColor();
+        }
+    }
+
+    private float lastApplied = -1f;
+
+    abstract Strategy getStrategy();
+
+    /**
+     * Puts the view and params in this renderer's canonical form for the given dim.
+     * Called before the window is added, or when switching strategies on an attached window
+     * (in which case the caller pushes the params with a single updateViewLayout).
+     */
+    final void prepare(View view, WindowManager.LayoutParams params, float dim) {
+        view.setAlpha(1f);
+        view.setBackgroundColor(Color.TRANSPARENT);
+        params.alpha = 1f;
+        params.dimAmount = 0f;
+        params.flags &= ~WindowManager.LayoutParams.FLAG_DIM_BEHIND;
+        onPrepare(view, params, dim);
+        lastApplied = dim;
+    }
+
+    /**
+     * Applies a new dim to an attached window, skipping no-op changes.
+     * Returns true if this went through WindowManager.updateViewLayout.
+     */
+    final boolean apply(WindowManager windowManager, View view, WindowManager.LayoutParams params, float dim) {
+        if (dim == lastApplied) return false;
+        lastApplied = dim;
+        if (onApply(view, params, dim)) {
+            try {
+                windowManager.updateViewLayout(view, params);
+                return true;
+            } catch (IllegalArgumentException ignored) {
+                // window is not attached
+            }
+        }
+        return false;
+    }
+
+    abstract void onPrepare(View view, WindowManager.LayoutParams params, float dim);
+
+    /** Returns true if the window params changed and must be pushed to WindowManager. */
+    abstract boolean onApply(View view, WindowManager.LayoutParams params, float dim);
+
+    static int blackWithAlpha(float dim) {
+        return Color.argb(Math.round(dim * 255), 0, 0, 0);
+    }
+
+    static final class ViewAlpha extends DimRenderer {
+        @Override
+        Strategy getStrategy() {
+            return Strategy.VIEW_ALPHA;
+        }
+
+        @Override
+        void onPrepare(View view, WindowManager.LayoutParams params, float dim) {
+            view.setBackgroundColor(0xFF000000);
+            view.setAlpha(dim);
+        }
+
+        @Override
+        boolean onApply(View view, WindowManager.LayoutParams params, float dim) {
+            view.setAlpha(dim);
+            return false;
+        }
+    }
+
+    static final class BackgroundColor extends DimRenderer {
+        @Override
+        Strategy getStrategy() {
+            return Strategy.BACKGROUND_COLOR;
+        }
+
+        @Override
+        void onPrepare(View view, WindowManager.LayoutParams params, float dim) {
+            view.setBackgroundColor(blackWithAlpha(dim));
+        }
+
+        @Override
+        boolean onApply(View view, WindowManager.LayoutParams params, float dim) {
+            view.setBackgroundColor(blackWithAlpha(dim));
+            return false;
+        }
+    }
+
+    static final class WindowAlpha extends DimRenderer {
+        @Override
+        Strategy getStrategy() {
+            return Strategy.WINDOW_ALPHA;
+        }
+
+        @Override
+        void onPrepare(View view, WindowManager.LayoutParams params, float dim) {
+            view.setBackgroundColor(0xFF000000);
+            params.alpha = dim;
+        }
+
+        @Override
+        boolean onApply(View view, WindowManager.LayoutParams params, float dim) {
+            params.alpha = dim;
+            return true;
+        }
+    }
+
+    static final class DimBehind extends DimRenderer {
+        @Override
+        Strategy getStrategy() {
+            return Strategy.DIM_BEHIND;
+        }
+
+        @Override
+        void onPrepare(View view, WindowManager.LayoutParams params, float dim) {
+            params.flags |= WindowManager.LayoutParams.FLAG_DIM_BEHIND;
+            params.dimAmount = dim;
+        }
+
+        @Override
+        boolean onApply(View view, WindowManager.LayoutParams params, float dim) {
+            params.dimAmount = dim;
+            return true;
+        }
+    }
+}
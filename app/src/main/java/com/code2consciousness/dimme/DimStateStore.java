@@ -0,0 +1,173 @@
+package com.code2consciousness.dimme;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.VisibleForTesting;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.code2consciousness.dimme.core.DimState;
+import com.code2consciousness.dimme.core.DimStateCell;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Process-wide holder of the current {@link DimState}.
+ *
+ * Updates are atomic (compare-and-set on an immutable snapshot, see {@link DimStateCell})
+ * and may come from any thread. Listeners are either called synchronously on the
+ * updating thread, or on the main thread; main-thread listeners are called directly when
+ * the update already runs on the main thread and otherwise get one coalesced callback
+ * with the latest snapshot.
+ */
+final class DimStateStore {
+
+    interface Listener {
+        void onDimStateChanged(DimState state);
+    }
+
+    interface Mutation extends DimStateCell.Mutation {
+    }
+
+    private static final DimStateStore INSTANCE = new DimStateStore();
+
+    static DimStateStore getInstance() {
+        return INSTANCE;
+    }
+
+    private final DimStateCell state = new DimStateCell(this::dispatch);
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicBoolean sessionClaimed = new AtomicBoolean();
+
+    DimStateStore() {
+    }
+
+    /**
+     * True for the first caller in this process only. The persisted session belongs to
+     * that caller; later ones (a service recreated in the same process) keep the
+     * in-memory state, which is newer. Unlike comparing against the initial state, this
+     * is not lost when the activity reports its visibility first.
+     */
+    boolean claimSession() {
+        return sessionClaimed.compareAndSet(false, true);
+    }
+
+    /** Back to the initial state with no listeners, as in a fresh process (tests only). */
+    @VisibleForTesting
+    void reset() {
+        for (Registration registration : registrations) registration.remove();
+        state.reset(DimState.INITIAL);
+        sessionClaimed.set(false);
+    }
+
+    DimState get() {
+        return state.get();
+    }
+
+    /** Applies the mutation atomically; returns the resulting snapshot. */
+    DimState update(Mutation mutation) {
+        return state.update(mutation);
+    }
+
+    void setDimLevel(int level) {
+        state.setDimLevel(level);
+    }
+
+    /** Moves the dim level by delta, clamped to the valid range. */
+    void nudgeDimLevel(int delta) {
+        state.nudgeDimLevel(delta);
+    }
+
+    void setPaused(boolean paused) {
+        state.setPaused(paused);
+    }
+
+    void togglePaused() {
+        state.togglePaused();
+    }
+
+    void setOverlayVisible(boolean visible) {
+        state.setOverlayVisible(visible);
+    }
+
+    void setControlsVisible(boolean visible) {
+        state.setControlsVisible(visible);
+    }
+
+    void setAppVisible(boolean visible) {
+        state.setAppVisible(visible);
+    }
+
+    /**
+     * Applies a folded command batch as one atomic update: an optional pause toggle
+     * followed by a level delta.
+     */
+    void applyCommand(int levelDelta, boolean togglePause) {
+        state.applyCommand(levelDelta, togglePause);
+    }
+
+    /**
+     * Registers a listener until {@link Registration#remove()} is called.
+     * The listener is not called with the current state; read {@link #get()} for that.
+     */
+    Registration addListener(Listener listener, boolean mainThread) {
+        Registration registration = new Registration(listener, mainThread);
+        registrations.add(registration);
+        return registration;
+    }
+
+    /**
+     * Registers a main-thread listener for the lifetime of the owner. The listener
+     * immediately receives the current state and is removed on ON_DESTROY.
+     */
+    Registration observe(LifecycleOwner owner, Listener listener) {
+        Registration registration = addListener(listener, true);
+        owner.getLifecycle().addObserver((LifecycleEventObserver) (source, event) -> {
+            if (event == Lifecycle.Event.ON_DESTROY) registration.remove();
+        });
+        listener.onDimStateChanged(get());
+        return registration;
+    }
+
+    private void dispatch() {
+        boolean onMain = Looper.myLooper() == Looper.getMainLooper();
+        for (Registration registration : registrations) {
+            if (!registration.mainThread || onMain) {
+                registration.deliver();
+            } else if (registration.scheduled.compareAndSet(false, true)) {
+                mainHandler.post(registration.mainDispatch);
+            }
+        }
+    }
+
+    final class Registration {
+        private final Listener listener;
+        private final boolean mainThread;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean removed;
+
+        private final Runnable mainDispatch = () -> {
+            scheduled.set(false);
+            deliver();
+        };
+
+        private Registration(Listener listener, boolean mainThread) {
+            this.listener = listener;
+            this.mainThread = mainThread;
+        }
+
+        private void deliver() {
+            if (!removed) listener.onDimStateChanged(state.get());
+        }
+
+        void remove() {
+            removed = true;
+            registrations.remove(this);
+            mainHandler.removeCallbacks(mainDispatch);
+        }
+    }
+}
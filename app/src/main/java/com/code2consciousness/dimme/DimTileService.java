@@ -0,0 +1,245 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.PendingIntent;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.IBinder;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.service.quicksettings.Tile;
+import android.service.quicksettings.TileService;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.core.content.ContextCompat;
+
+import com.code2consciousness.dimme.core.DimLevel;
+import com.code2consciousness.dimme.core.DimState;
+
+/**
+ * Quick Settings tile: starts dimming and steps through preset levels without opening
+ * an activity.
+ *
+ * Each tap moves one step along off -> on (at the last level) -> next preset above the
+ * current level -> ... -> off; a paused dim is resumed first. While the panel is open the
+ * tile follows {@link DimStateStore} through a main-thread listener and talks to a
+ * running service through its {@link DimControl} binder (bound without auto-create, so
+ * an open panel never starts the service). A tap that lands while a running service is
+ * still being bound waits for the connection. The service times each tap to the first
+ * frame that shows it.
+ */
+@RequiresApi(Build.VERSION_CODES.N)
+public class DimTileService extends TileService {
+
+    private static final String TAG = "DimTileService";
+
+    /** Preset levels in per-mille, in tap order. */
+    static final int[] PRESETS = {250, 500, 750};
+
+    private static final int SUBTITLE_OFF = -1;
+    private static final int SUBTITLE_PAUSED = -2;
+
+    private final DimStateStore stateStore = DimStateStore.getInstance();
+    private DimStateStore.Registration stateRegistration;
+
+    // Running service's control surface; null while it is not running or not yet bound
+    private DimControl control;
+    private boolean serviceBound;
+    // elapsedRealtimeNanos of a tap waiting for the bind to connect, or 0
+    private long pendingTapNanos;
+    private final ServiceConnection serviceConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            control = (DimControl) service;
+            if (pendingTapNanos != 0) {
+                long tapNanos = pendingTapNanos;
+                pendingTapNanos = 0;
+                handleTap(tapNanos);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            control = null;
+        }
+    };
+
+    // What the tile shows; only pushed to SystemUI when it changes
+    private int renderedState = -1;
+    private int renderedSubtitleKey = Integer.MIN_VALUE;
+    private String renderedSubtitle;
+    private int tileUpdates;
+
+    @Override
+    public void onStartListening() {
+        super.onStartListening();
+        if (stateRegistration == null) stateRegistration = stateStore.addListener(this::render, true);
+        if (!serviceBound) {
+            serviceBound = bindService(new Intent(this, DimOverlayService.class), serviceConnection, 0);
+        }
+        render(stateStore.get());
+    }
+
+    @Override
+    public void onStopListening() {
+        super.onStopListening();
+        if (stateRegistration != null) {
+            stateRegistration.remove();
+            stateRegistration = null;
+        }
+        unbind();
+    }
+
+    @Override
+    public void onDestroy() {
+        if (stateRegistration != null) stateRegistration.remove();
+        unbind();
+        super.onDestroy();
+    }
+
+    private void unbind() {
+        if (!serviceBound) return;
+        unbindService(serviceConnection);
+        serviceBound = false;
+        control = null;
+        pendingTapNanos = 0;
+    }
+
+    @Override
+    public void onClick() {
+        super.onClick();
+        long tapNanos = SystemClock.elapsedRealtimeNanos();
+        if (control == null && serviceBound && stateStore.get().overlayVisible) {
+            // the service is running but the bind has not connected yet; starting it
+            // again would rerun its startup and bring back hidden controls
+            pendingTapNanos = tapNanos;
+            return;
+        }
+        handleTap(tapNanos);
+    }
+
+    private void handleTap(long tapNanos) {
+        DimState state = stateStore.get();
+        if (control == null || !state.overlayVisible) {
+            startDimming(tapNanos);
+            return;
+        }
+        if (state.paused) {
+            control.noteTileTap(tapNanos);
+            control.setPaused(false);
+            return;
+        }
+        int next = nextPreset(state.dimLevel);
+        if (next < 0) {
+            control.close();
+            return;
+        }
+        control.noteTileTap(tapNanos);
+        control.setDim(next);
+    }
+
+    /** The first preset above level, or -1 when level is at or past the last one. */
+    static int nextPreset(int level) {
+        for (int preset : PRESETS) {
+            if (preset > level) return preset;
+        }
+        return -1;
+    }
+
+    private void startDimming(long tapNanos) {
+        if (!canStartService()) {
+            // permissions are asked for by the launcher; this is the only path that opens UI
+            openLauncher();
+            return;
+        }
+        Intent intent = new Intent(this, DimOverlayService.class)
+                .putExtra(DimOverlayService.EXTRA_TILE_TAP_NANOS, tapNanos);
+        try {
+            ContextCompat.startForegroundService(this, intent);
+        } catch (IllegalStateException e) {
+            // background start not allowed on this device/state
+            Log.w(TAG, "Could not start the service from the tile", e);
+            openLauncher();
+            return;
+        }
+        if (!serviceBound) {
+            serviceBound = bindService(new Intent(this, DimOverlayService.class), serviceConnection, 0);
+        }
+    }
+
+    private boolean canStartService() {
+        if (!Settings.canDrawOverlays(this)) return false;
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.TIRAMISU
+                || ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                        == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @SuppressWarnings("deprecation")
+    private void openLauncher() {
+        Intent intent = new Intent(this, LauncherActivity.class).addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            startActivityAndCollapse(PendingIntent.getActivity(this, 0, intent, PendingIntent.FLAG_IMMUTABLE));
+        } else {
+            startActivityAndCollapse(intent);
+        }
+    }
+
+    // Called for every store change, drag frames included: compare ints, build the text
+    // only when it changes
+    private void render(DimState state) {
+        int tileState = tileState(state);
+        int subtitleKey = subtitleKey(state);
+        if (tileState == renderedState && subtitleKey == renderedSubtitleKey) return;
+        String subtitle = subtitle(state);
+        renderedState = tileState;
+        renderedSubtitleKey = subtitleKey;
+        renderedSubtitle = subtitle;
+        tileUpdates++;
+
+        Tile tile = getQsTile();
+        if (tile == null) return;
+        tile.setState(tileState);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) tile.setSubtitle(subtitle);
+        tile.updateTile();
+    }
+
+    static int tileState(DimState state) {
+        return state.overlayVisible && !state.paused ? Tile.STATE_ACTIVE : Tile.STATE_INACTIVE;
+    }
+
+    static String subtitle(DimState state) {
+        int key = subtitleKey(state);
+        if (key == SUBTITLE_OFF) return "Off";
+        if (key == SUBTITLE_PAUSED) return "Paused";
+        return key + "%";
+    }
+
+    // The subtitle as a number: the percentage shown, or one of the SUBTITLE_ values
+    private static int subtitleKey(DimState state) {
+        if (!state.overlayVisible) return SUBTITLE_OFF;
+        if (state.paused) return SUBTITLE_PAUSED;
+        return state.dimLevel * 100 / DimLevel.MAX;
+    }
+
+    int getRenderedState() {
+        return renderedState;
+    }
+
+    @Nullable
+    String getRenderedSubtitle() {
+        return renderedSubtitle;
+    }
+
+    int getTileUpdates() {
+        return tileUpdates;
+    }
+
+    boolean isControlBound() {
+        return control != null;
+    }
+}
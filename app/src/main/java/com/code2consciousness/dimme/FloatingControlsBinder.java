@@ -0,0 +1,43 @@
+package com.code2consciousness.dimme;
+
+import com.code2consciousness.dimme.core.DimState;
+
+/**
+ * Pushes DimState into the floating control bar.
+ *
+ * bind() remembers what it rendered last and only touches the properties that changed.
+ * The bar preloads its icons, so a state update does no resource lookups and allocates
+ * nothing.
+ */
+final class FloatingControlsBinder {
+
+    private final ControlBarView bar;
+
+    private boolean rendered;
+    private boolean renderedPaused;
+    private int writeCount;
+
+    FloatingControlsBinder(ControlBarView bar) {
+        this.bar = bar;
+    }
+
+    void bind(DimState state) {
+        if (!rendered || state.paused != renderedPaused) {
+            bar.setPaused(state.paused);
+            renderedPaused = state.paused;
+            rendered = true;
+            writeCount++;
+        }
+        // the user can move the bar directly, so compare against the view rather than a cache
+        int progress = state.seekBarProgress();
+        if (bar.getProgress() != progress) {
+            bar.setProgress(progress);
+            writeCount++;
+        }
+    }
+
+    /** Number of property groups written so far; tests use it to check that no-op binds write nothing. */
+    int getWriteCount() {
+        return writeCount;
+    }
+}
@@ -0,0 +1,196 @@
+package com.code2consciousness.dimme;
+
+import android.graphics.Point;
+import android.view.Choreographer;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.WindowManager;
+
+/**
+ * Touch listener that drags a floating overlay window.
+ *
+ * Move events only record the latest target position; the window is pushed to
+ * WindowManager at most once per Choreographer frame. The position is clamped to the
+ * display. The window only turns focusable once a move passes the touch slop, and that
+ * flip is folded into the same frame update, so a tap of any length does not touch the
+ * window at all.
+ */
+final class FloatingDragController implements View.OnTouchListener, Choreographer.FrameCallback {
+
+    interface OnMovedListener {
+        void onWindowMoved(int x, int y);
+    }
+
+    private final WindowManager windowManager;
+    private final View window;
+    private final WindowManager.LayoutParams params;
+    private final FrameScheduler frames;
+    private final int touchSlop;
+
+    private final Point displaySize = new Point();
+
+    private int initialX, initialY;
+    private float initialTouchX, initialTouchY;
+    private boolean dragging;
+
+    // Desired window state, applied on the next frame
+    private int targetX, targetY;
+    private boolean targetFocusable;
+    private boolean frameScheduled;
+    private long minFrameIntervalNanos;
+    private long lastUpdateNanos;
+
+    private long layoutUpdateCount;
+    private OnMovedListener onMovedListener;
+
+    FloatingDragController(WindowManager windowManager, View window,
+                           WindowManager.LayoutParams params, FrameScheduler frames) {
+        this.windowManager = windowManager;
+        this.window = window;
+        this.params = params;
+        this.frames = frames;
+        touchSlop = ViewConfiguration.get(window.getContext()).getScaledTouchSlop();
+        targetX = params.x;
+        targetY = params.y;
+        targetFocusable = isFocusable(params.flags);
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // nothing changes until the finger moves past the slop
+                dragging = false;
+                initialX = targetX;
+                initialY = targetY;
+                initialTouchX = event.getRawX();
+                initialTouchY = event.getRawY();
+                // one display query per gesture rather than per move
+                windowManager.getDefaultDisplay().getRealSize(displaySize);
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                float dx = event.getRawX() - initialTouchX;
+                float dy = event.getRawY() - initialTouchY;
+                if (!dragging) {
+                    if (Math.abs(dx) <= touchSlop && Math.abs(dy) <= touchSlop) return true;
+                    // Make interactive
+                    dragging = true;
+                    targetFocusable = true;
+                }
+                targetX = clampX(initialX + (int) dx);
+                targetY = clampY(initialY + (int) dy);
+                scheduleFrame();
+                return true;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (dragging) {
+                    // revert to click-through outside the window
+                    dragging = false;
+                    targetFocusable = false;
+                    scheduleFrame();
+                }
+                if (event.getActionMasked() == MotionEvent.ACTION_UP) {
+                    // Accessibility: dispatch a click so performClick is handled
+                    v.performClick();
+                }
+                return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (minFrameIntervalNanos > 0 && layoutUpdateCount > 0
+                && frameTimeNanos - lastUpdateNanos < minFrameIntervalNanos) {
+            // too soon; keep the target and look again next frame
+            frames.postFrameCallback(this);
+            return;
+        }
+        frameScheduled = false;
+        int flags = targetFocusable
+                ? params.flags & ~WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                : params.flags | WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        if (params.x == targetX && params.y == targetY && params.flags == flags) return;
+
+        boolean moved = params.x != targetX || params.y != targetY;
+        params.x = targetX;
+        params.y = targetY;
+        params.flags = flags;
+        try {
+            windowManager.updateViewLayout(window, params);
+            layoutUpdateCount++;
+            lastUpdateNanos = frameTimeNanos;
+        } catch (IllegalArgumentException ignored) {
+            // window was removed mid-gesture
+        }
+        if (moved && onMovedListener != null) onMovedListener.onWindowMoved(targetX, targetY);
+    }
+
+    void setOnMovedListener(OnMovedListener listener) {
+        onMovedListener = listener;
+    }
+
+    /** Moves the window at most once per interval (0 = every frame). */
+    void setMinFrameIntervalNanos(long intervalNanos) {
+        minFrameIntervalNanos = Math.max(0, intervalNanos);
+    }
+
+    /** Drops a pending frame, e.g. when the window is being removed. */
+    void cancel() {
+        if (frameScheduled) {
+            frames.removeFrameCallback(this);
+            frameScheduled = false;
+        }
+    }
+
+    /** Re-reads the params after the owner moved the window directly. */
+    void syncFromParams() {
+        targetX = params.x;
+        targetY = params.y;
+        targetFocusable = isFocusable(params.flags);
+    }
+
+    long getLayoutUpdateCount() {
+        return layoutUpdateCount;
+    }
+
+    private void scheduleFrame() {
+        if (frameScheduled) return;
+        frameScheduled = true;
+        frames.postFrameCallback(this);
+    }
+
+    private int clampX(int x) {
+        return clamp(x, params.gravity & Gravity.HORIZONTAL_GRAVITY_MASK,
+                displaySize.x - window.getWidth());
+    }
+
+    private int clampY(int y) {
+        return clamp(y, params.gravity & Gravity.VERTICAL_GRAVITY_MASK,
+                displaySize.y - window.getHeight());
+    }
+
+    // x/y are offsets from an edge for edge gravities, and from the center otherwise.
+    private static int clamp(int value, int axisGravity, int slack) {
+        if (slack <= 0) return value;
+        int min, max;
+        // START/END reduce to LEFT/RIGHT once masked
+        if (axisGravity == Gravity.LEFT || axisGravity == Gravity.RIGHT
+                || axisGravity == Gravity.TOP || axisGravity == Gravity.BOTTOM) {
+            min = 0;
+            max = slack;
+        } else {
+            min = -slack / 2;
+            max = slack / 2;
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static boolean isFocusable(int flags) {
+        return (flags & WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE) == 0;
+    }
+}
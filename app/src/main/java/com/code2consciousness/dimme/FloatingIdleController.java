@@ -0,0 +1,106 @@
+package com.code2consciousness.dimme;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+/**
+ * Collapses the floating controls into an edge handle after a period without touches,
+ * and expands them again on the first touch.
+ *
+ * Touches only record their time; one idle check is posted per timeout and, when it
+ * finds a more recent touch, reposts itself for the remainder. A drag therefore costs no
+ * handler traffic. While collapsed, the whole gesture that expands the controls is
+ * consumed so it cannot land on a control underneath. Main thread only.
+ */
+final class FloatingIdleController implements View.OnTouchListener {
+
+    interface Target {
+        void collapse();
+
+        void expand();
+    }
+
+    private final Handler handler;
+    private final long timeoutMs;
+    private final Target target;
+
+    private boolean running;
+    private boolean collapsed;
+    private boolean consumingGesture;
+    // a finger is down; a held press is not idle even without new events
+    private boolean touching;
+    private long lastTouchUptime;
+    private int collapseCount;
+
+    private final Runnable idleCheck = this::checkIdle;
+
+    /** @param timeoutMs idle time before collapsing; 0 disables auto-hide */
+    FloatingIdleController(Handler handler, long timeoutMs, Target target) {
+        this.handler = handler;
+        this.timeoutMs = Math.max(0, timeoutMs);
+        this.target = target;
+    }
+
+    /** The controls are shown: start counting idle time from now. */
+    void start() {
+        if (timeoutMs == 0) return;
+        lastTouchUptime = SystemClock.uptimeMillis();
+        if (running) return;
+        running = true;
+        handler.postDelayed(idleCheck, timeoutMs);
+    }
+
+    /** The controls are hidden or detached. Does not call {@link Target#expand()}. */
+    void stop() {
+        running = false;
+        collapsed = false;
+        consumingGesture = false;
+        touching = false;
+        handler.removeCallbacks(idleCheck);
+    }
+
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        lastTouchUptime = SystemClock.uptimeMillis();
+        int action = event.getActionMasked();
+        boolean ends = action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL;
+        touching = !ends;
+        if (collapsed && action == MotionEvent.ACTION_DOWN) {
+            collapsed = false;
+            consumingGesture = true;
+            target.expand();
+            start();
+        }
+        if (!consumingGesture) return false;
+        if (ends) consumingGesture = false;
+        return true;
+    }
+
+    boolean isCollapsed() {
+        return collapsed;
+    }
+
+    int getCollapseCount() {
+        return collapseCount;
+    }
+
+    long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    private void checkIdle() {
+        if (!running) return;
+        long idle = SystemClock.uptimeMillis() - lastTouchUptime;
+        if (touching) idle = 0;
+        if (idle < timeoutMs) {
+            handler.postDelayed(idleCheck, timeoutMs - idle);
+            return;
+        }
+        running = false;
+        collapsed = true;
+        collapseCount++;
+        target.collapse();
+    }
+}
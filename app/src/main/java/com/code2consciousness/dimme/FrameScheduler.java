@@ -0,0 +1,30 @@
+package com.code2consciousness.dimme;
+
+import android.view.Choreographer;
+
+/**
+ * Source of display frames. Production code uses the main-thread Choreographer;
+ * tests substitute a manual scheduler to step frames deterministically.
+ */
+interface FrameScheduler {
+
+    void postFrameCallback(Choreographer.FrameCallback callback);
+
+    void removeFrameCallback(Choreographer.FrameCallback callback);
+
+    /** Must be called on the main thread. */
+    static FrameScheduler choreographer() {
+        final Choreographer choreographer = Choreographer.getInstance();
+        return new FrameScheduler() {
+            @Override
+            public void postFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.postFrameCallback(callback);
+            }
+
+            @Override
+            public void removeFrameCallback(Choreographer.FrameCallback callback) {
+                choreographer.removeFrameCallback(callback);
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package com.code2consciousness.dimme;
+
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Printer;
+
+import com.code2consciousness.dimme.core.DimState;
+
+import java.io.PrintWriter;
+
+/**
+ * Measures how long each main-looper message takes and keeps the slow ones.
+ *
+ * Installed as the main Looper's message Printer, which gets a ">>>>> Dispatching" line
+ * before and a "<<<<< Finished" line after every message. Messages over
+ * {@link #SLOW_NANOS} are stored with the dispatch line (handler, Runnable class, what)
+ * and the DimState at that moment in a fixed ring buffer; the Runnable class is only
+ * parsed out when dumping. A Looper has a single Printer, so this replaces any other.
+ */
+final class JankWatchdog implements Printer {
+
+    static final long SLOW_NANOS = 8_000_000L;
+    static final long JANK_NANOS = 16_000_000L;
+    static final int CAPACITY = 32;
+
+    private final DimStateStore stateStore;
+    private final Looper looper;
+
+    private long dispatchStartNanos = -1;
+    private String dispatchLine;
+
+    // Ring buffer of slow messages; writes happen on the looper, reads from dump()
+    private final long[] atUptimeMillis = new long[CAPACITY];
+    private final long[] durationNanos = new long[CAPACITY];
+    private final String[] dispatches = new String[CAPACITY];
+    private final DimState[] states = new DimState[CAPACITY];
+    private int next;
+    private long slowCount;
+    private long jankCount;
+    private long messageCount;
+    private boolean installed;
+
+    JankWatchdog(Looper looper, DimStateStore stateStore) {
+        this.looper = looper;
+        this.stateStore = stateStore;
+    }
+
+    void install() {
+        if (installed) return;
+        looper.setMessageLogging(this);
+        installed = true;
+    }
+
+    void uninstall() {
+        if (!installed) return;
+        looper.setMessageLogging(null);
+        installed = false;
+        dispatchStartNanos = -1;
+    }
+
+    boolean isInstalled() {
+        return installed;
+    }
+
+    @Override
+    public void println(String line) {
+        if (line.startsWith(">>>>>")) {
+            dispatchStartNanos = SystemClock.elapsedRealtimeNanos();
+            dispatchLine = line;
+        } else if (line.startsWith("<<<<<") && dispatchStartNanos >= 0) {
+            long duration = SystemClock.elapsedRealtimeNanos() - dispatchStartNanos;
+            dispatchStartNanos = -1;
+            messageCount++;
+            if (duration > SLOW_NANOS) record(duration);
+        }
+    }
+
+    private synchronized void record(long duration) {
+        slowCount++;
+        if (duration > JANK_NANOS) jankCount++;
+        int i = next;
+        atUptimeMillis[i] = SystemClock.uptimeMillis();
+        durationNanos[i] = duration;
+        dispatches[i] = dispatchLine;
+        states[i] = stateStore.get();
+        next = (i + 1) % CAPACITY;
+    }
+
+    synchronized long getSlowCount() {
+        return slowCount;
+    }
+
+    synchronized long getJankCount() {
+        return jankCount;
+    }
+
+    /**
+     * Pulls the callback (usually the Runnable's class) out of a Looper dispatch line:
+     * ">>>>> Dispatching to Handler (android.os.Handler) {1a2b} com.example.Foo$1@3c4d: 0".
+     */
+    static String callbackName(String dispatch) {
+        if (dispatch == null) return "?";
+        int start = dispatch.indexOf("} ");
+        if (start < 0) return "?";
+        start += 2;
+        int end = dispatch.lastIndexOf(": ");
+        if (end < start) end = dispatch.length();
+        String callback = dispatch.substring(start, end);
+        int hash = callback.lastIndexOf('@');
+        if (hash > 0) callback = callback.substring(0, hash);
+        return callback;
+    }
+
+    synchronized void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("jank:");
+        writer.print(prefix);
+        writer.print("  installed=");
+        writer.println(installed);
+        writer.print(prefix);
+        writer.print("  messages=");
+        writer.println(messageCount);
+        writer.print(prefix);
+        writer.print("  slow_8ms=");
+        writer.println(slowCount);
+        writer.print(prefix);
+        writer.print("  jank_16ms=");
+        writer.println(jankCount);
+        // oldest first
+        int stored = (int) Math.min(slowCount, CAPACITY);
+        for (int n = 0; n < stored; n++) {
+            int i = (next - stored + n + CAPACITY) % CAPACITY;
+            writer.print(prefix);
+            writer.print("  slow at_ms=");
+            writer.print(atUptimeMillis[i]);
+            writer.print(" duration_us=");
+            writer.print(durationNanos[i] / 1000L);
+            writer.print(" callback=");
+            writer.print(callbackName(dispatches[i]));
+            writer.print(" state=");
+            writer.println(states[i]);
+        }
+    }
+}
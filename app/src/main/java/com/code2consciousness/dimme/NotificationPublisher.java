@@ -0,0 +1,162 @@
+package com.code2consciousness.dimme;
+
+import android.os.Handler;
+import android.os.SystemClock;
+
+import com.code2consciousness.dimme.core.DimLevel;
+import com.code2consciousness.dimme.core.DimState;
+
+/**
+ * Sits between the service state and NotificationManager.notify().
+ *
+ * Holds the last published state and drops updates whose visible state
+ * (paused, at-min, at-max) did not change. Bursts are coalesced to at most one
+ * post per interval; a trailing post always carries the latest state.
+ *
+ * Must only be used from the thread owning the given Handler (the main thread).
+ */
+final class NotificationPublisher {
+
+    static final long DEFAULT_MIN_INTERVAL_MS = 250;
+
+    interface Sink {
+        /** Called with the state to show; it is the one the publisher just recorded. */
+        void post(DimState state);
+    }
+
+    /** Time and delayed work; production uses the main Handler, tests a manual one. */
+    interface Scheduler {
+        long uptimeMillis();
+
+        void postDelayed(Runnable runnable, long delayMs);
+
+        void removeCallbacks(Runnable runnable);
+    }
+
+    static Scheduler handlerScheduler(final Handler handler) {
+        return new Scheduler() {
+            @Override
+            public long uptimeMillis() {
+                return SystemClock.uptimeMillis();
+            }
+
+            @Override
+            public void postDelayed(Runnable runnable, long delayMs) {
+                handler.postDelayed(runnable, delayMs);
+            }
+
+            @Override
+            public void removeCallbacks(Runnable runnable) {
+                handler.removeCallbacks(runnable);
+            }
+        };
+    }
+
+    private final Scheduler scheduler;
+    private final Sink sink;
+    private long minIntervalMs;
+
+    private boolean hasPublished;
+    private int publishedLevel;
+    private boolean publishedPaused;
+
+    private DimState pending;
+    private boolean flushScheduled;
+    private long lastPostUptime;
+
+    private long postedCount;
+    private long suppressedCount;
+
+    private final Runnable flushRunnable = this::flush;
+
+    NotificationPublisher(Handler handler, long minIntervalMs, Sink sink) {
+        this(handlerScheduler(handler), minIntervalMs, sink);
+    }
+
+    NotificationPublisher(Scheduler scheduler, long minIntervalMs, Sink sink) {
+        this.scheduler = scheduler;
+        this.sink = sink;
+        this.minIntervalMs = Math.max(0, minIntervalMs);
+    }
+
+    void setMinIntervalMs(long minIntervalMs) {
+        this.minIntervalMs = Math.max(0, minIntervalMs);
+    }
+
+    long getMinIntervalMs() {
+        return minIntervalMs;
+    }
+
+    /** Requests that the notification reflect this state. */
+    void submit(DimState state) {
+        pending = state;
+
+        if (flushScheduled) {
+            // a trailing post is already queued and will pick up this state
+            suppressedCount++;
+            return;
+        }
+        if (isPublished(state)) {
+            suppressedCount++;
+            return;
+        }
+
+        long now = scheduler.uptimeMillis();
+        long elapsed = now - lastPostUptime;
+        if (!hasPublished || elapsed >= minIntervalMs) {
+            flush();
+        } else {
+            flushScheduled = true;
+            scheduler.postDelayed(flushRunnable, minIntervalMs - elapsed);
+        }
+    }
+
+    /** Forgets the last published state so the next submit always posts. */
+    void invalidate() {
+        hasPublished = false;
+    }
+
+    /** Drops any pending trailing post. */
+    void cancel() {
+        scheduler.removeCallbacks(flushRunnable);
+        flushScheduled = false;
+    }
+
+    long getPostedCount() {
+        return postedCount;
+    }
+
+    long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    int getPublishedLevel() {
+        return publishedLevel;
+    }
+
+    boolean isPublishedPaused() {
+        return publishedPaused;
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        DimState state = pending;
+        if (state == null || isPublished(state)) {
+            suppressedCount++;
+            return;
+        }
+        hasPublished = true;
+        publishedLevel = state.dimLevel;
+        publishedPaused = state.paused;
+        lastPostUptime = scheduler.uptimeMillis();
+        postedCount++;
+        sink.post(state);
+    }
+
+    private boolean isPublished(DimState state) {
+        return hasPublished
+                && publishedPaused == state.paused
+                && DimLevel.isAtMin(publishedLevel) == DimLevel.isAtMin(state.dimLevel)
+                && DimLevel.isAtMax(publishedLevel) == DimLevel.isAtMax(state.dimLevel);
+    }
+}
@@ -0,0 +1,120 @@
+package com.code2consciousness.dimme;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.LongSparseArray;
+
+import androidx.annotation.DrawableRes;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+import androidx.core.graphics.drawable.DrawableCompat;
+
+/**
+ * Everything the foreground notification needs that does not change between builds:
+ * the PendingIntents, the parsed palette and the tinted icon bitmaps.
+ *
+ * Built once per service instance. Bitmaps are keyed by (drawable, tint) only: the whole
+ * cache belongs to the current density and UI mode (night variants), and is flushed when
+ * either changes, so neither needs to be part of the key. The bitmap
+ * cache is read by the notification worker and cleared from the main thread, so access
+ * is synchronized.
+ */
+final class NotificationResources {
+
+    // Palette, parsed once
+    final int accentColor = Color.parseColor("#FFC107");
+    final int resumeColor = Color.GREEN;
+    final int disabledColor = Color.LTGRAY;
+
+    final PendingIntent showFloatingPending;
+    final PendingIntent pausePending;
+    final PendingIntent closePending;
+    final PendingIntent plusPending;
+    final PendingIntent minusPending;
+
+    private final Context context;
+    private final LongSparseArray<Bitmap> tintedBitmaps = new LongSparseArray<>();
+    private final Configuration lastConfig = new Configuration();
+    private int rasterizeCount;
+
+    NotificationResources(Context context) {
+        this.context = context;
+        lastConfig.setTo(context.getResources().getConfiguration());
+
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) flags |= PendingIntent.FLAG_IMMUTABLE;
+
+        showFloatingPending = servicePending(0, DimOverlayService.ACTION_SHOW_FLOATING, flags);
+        pausePending = servicePending(1, "PAUSE", flags);
+        closePending = servicePending(2, "CLOSE", flags);
+        plusPending = servicePending(3, "PLUS", flags);
+        minusPending = servicePending(4, "MINUS", flags);
+    }
+
+    private PendingIntent servicePending(int requestCode, String action, int flags) {
+        return PendingIntent.getService(context, requestCode,
+                new Intent(context, DimOverlayService.class).setAction(action), flags);
+    }
+
+    /**
+     * Returns the drawable rendered to a bitmap with the given tint, or null if the
+     * drawable could not be loaded. The same instance is returned until invalidated.
+     */
+    @Nullable
+    synchronized Bitmap getTintedBitmap(@DrawableRes int drawableRes, int tint) {
+        long key = ((long) drawableRes << 32) | (tint & 0xFFFFFFFFL);
+        Bitmap cached = tintedBitmaps.get(key);
+        if (cached != null) return cached;
+
+        Bitmap bmp = rasterize(drawableRes, tint);
+        if (bmp != null) tintedBitmaps.put(key, bmp);
+        return bmp;
+    }
+
+    /** Drops cached bitmaps if the change affects how drawables are resolved. */
+    synchronized void onConfigurationChanged(Configuration newConfig) {
+        int diff = lastConfig.diff(newConfig);
+        lastConfig.setTo(newConfig);
+        if ((diff & (ActivityInfo.CONFIG_DENSITY | ActivityInfo.CONFIG_UI_MODE)) != 0) {
+            tintedBitmaps.clear();
+        }
+    }
+
+    synchronized int getRasterizeCount() {
+        return rasterizeCount;
+    }
+
+    @Nullable
+    private Bitmap rasterize(@DrawableRes int drawableRes, int tint) {
+        Drawable d = ContextCompat.getDrawable(context, drawableRes);
+        if (d == null) return null;
+        // Tint the drawable before drawing so RemoteViews shows the expected color.
+        try {
+            Drawable wrapped = DrawableCompat.wrap(d).mutate();
+            DrawableCompat.setTint(wrapped, tint);
+            d = wrapped;
+        } catch (Throwable ignored) {
+        }
+
+        rasterizeCount++;
+        if (d instanceof BitmapDrawable) {
+            return ((BitmapDrawable) d).getBitmap();
+        }
+        int w = d.getIntrinsicWidth() > 0 ? d.getIntrinsicWidth() : 48;
+        int h = d.getIntrinsicHeight() > 0 ? d.getIntrinsicHeight() : 48;
+        Bitmap bmp = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bmp);
+        d.setBounds(0, 0, w, h);
+        d.draw(canvas);
+        return bmp;
+    }
+}
@@ -0,0 +1,128 @@
+package com.code2consciousness.dimme;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import com.code2consciousness.dimme.core.DimState;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Builds and posts the foreground notification on its own thread.
+ *
+ * submit() only stores the latest DimState snapshot and wakes the worker, so the main
+ * thread never builds RemoteViews or rasterizes icons and never waits on the worker.
+ * A build whose snapshot was superseded while it ran is dropped; the worker then builds
+ * the newer one, so only the latest result is posted.
+ */
+final class NotificationWorker {
+
+    interface Builder {
+        /** Called on the worker thread. */
+        Notification build(DimState state);
+    }
+
+    private final Builder builder;
+    private final NotificationManager manager;
+    private final int notificationId;
+    private final HandlerThread thread;
+    private final Handler handler;
+
+    private final AtomicReference<DimState> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    // bumped by cancel(); a build started before it must not post
+    private final AtomicInteger cancelGeneration = new AtomicInteger();
+    private final Runnable buildRunnable = this::buildLatest;
+    private final Runnable removeRunnable = this::removePosted;
+
+    private final AtomicInteger builtCount = new AtomicInteger();
+    private final AtomicInteger postedCount = new AtomicInteger();
+    private final AtomicInteger staleCount = new AtomicInteger();
+
+    NotificationWorker(Builder builder, NotificationManager manager, int notificationId) {
+        this.builder = builder;
+        this.manager = manager;
+        this.notificationId = notificationId;
+        thread = new HandlerThread("DimMe-notification");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /** Queues a build of the given snapshot, replacing any snapshot not yet built. */
+    void submit(DimState state) {
+        pending.set(state);
+        if (scheduled.compareAndSet(false, true)) {
+            handler.post(buildRunnable);
+        }
+    }
+
+    /**
+     * Drops queued builds; a build already running will not be posted. Never blocks:
+     * a notify() already past its check may still land, see cancelAndRemove().
+     */
+    void cancel() {
+        cancelGeneration.incrementAndGet();
+        pending.set(null);
+        handler.removeCallbacks(buildRunnable);
+        scheduled.set(false);
+    }
+
+    /**
+     * cancel(), then takes the notification down on the worker thread, after any
+     * notify() that raced with the cancel. The system ignores this for a notification
+     * that belongs to a running foreground service.
+     */
+    void cancelAndRemove() {
+        cancel();
+        handler.post(removeRunnable);
+    }
+
+    void quit() {
+        cancel();
+        thread.quitSafely();
+    }
+
+    private void buildLatest() {
+        scheduled.set(false);
+        int generation = cancelGeneration.get();
+        DimState state = pending.getAndSet(null);
+        if (state == null) return;
+
+        Notification notification = builder.build(state);
+        builtCount.incrementAndGet();
+
+        // a newer snapshot arrived while building; its own run will post it
+        if (pending.get() != null || generation != cancelGeneration.get()) {
+            staleCount.incrementAndGet();
+            return;
+        }
+        manager.notify(notificationId, notification);
+        postedCount.incrementAndGet();
+    }
+
+    private void removePosted() {
+        // runs before any build submitted after the cancel, so it only removes stale posts
+        manager.cancel(notificationId);
+    }
+
+    Looper getLooper() {
+        return thread.getLooper();
+    }
+
+    int getBuiltCount() {
+        return builtCount.get();
+    }
+
+    int getPostedCount() {
+        return postedCount.get();
+    }
+
+    int getStaleCount() {
+        return staleCount.get();
+    }
+}
@@ -0,0 +1,231 @@
+package com.code2consciousness.dimme;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Build;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.os.SystemClock;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Picks how much work the service may spend on smooth updates, from battery saver and the
+ * thermal status.
+ *
+ * A stricter tier applies as soon as an event asks for it. Stepping back down waits until
+ * the inputs have asked for the lower tier for {@link #DEFAULT_STEP_DOWN_HOLD_MS} without
+ * interruption, so a thermal status that oscillates around a threshold does not make the
+ * service flip settings back and forth. Main thread only.
+ */
+final class QosController {
+
+    enum Tier {
+        /** Animated transitions, per-frame updates, the configured renderer. */
+        FULL(true, NotificationPublisher.DEFAULT_MIN_INTERVAL_MS, 0L, false),
+        /** Battery saver or moderate heat: no animations, 30 Hz updates, cheapest renderer. */
+        REDUCED(false, 1_000L, 33_333_333L, true),
+        /** Severe heat, or battery saver while warm: 15 Hz updates, rare notification posts. */
+        MINIMAL(false, 3_000L, 66_666_667L, true);
+
+        final boolean animations;
+        final long notificationIntervalMs;
+        /** Minimum time between applied drag and render frames; 0 = every frame. */
+        final long frameIntervalNanos;
+        /**
+         * Use the renderer with the least work per change (see DimOverlayService). Only
+         * matters when a non-default renderer is configured; the default already is that one.
+         */
+        final boolean cheapRenderer;
+
+        Tier(boolean animations, long notificationIntervalMs, long frameIntervalNanos, boolean cheapRenderer) {
+            this.animations = animations;
+            this.notificationIntervalMs = notificationIntervalMs;
+            this.frameIntervalNanos = frameIntervalNanos;
+            this.cheapRenderer = cheapRenderer;
+        }
+    }
+
+    interface Listener {
+        void onTierChanged(Tier tier);
+    }
+
+    static final long DEFAULT_STEP_DOWN_HOLD_MS = 30_000L;
+    static final int HISTORY = 16;
+
+    private final Handler handler;
+    private final long stepDownHoldMs;
+    private final Listener listener;
+
+    private boolean powerSave;
+    private int thermalStatus = PowerManager.THERMAL_STATUS_NONE;
+    private Tier tier = Tier.FULL;
+    // since when the inputs have asked for a lower tier than the current one, or -1
+    private long lowerSinceUptime = -1;
+
+    // Ring buffer of transitions
+    private final long[] historyAtMillis = new long[HISTORY];
+    private final Tier[] historyFrom = new Tier[HISTORY];
+    private final Tier[] historyTo = new Tier[HISTORY];
+    private final boolean[] historyPowerSave = new boolean[HISTORY];
+    private final int[] historyThermal = new int[HISTORY];
+    private int historyNext;
+    private int transitionCount;
+
+    private Context context;
+    private PowerManager powerManager;
+    private PowerManager.OnThermalStatusChangedListener thermalListener;
+
+    private final Runnable stepDownRunnable = this::evaluate;
+
+    private final BroadcastReceiver powerSaveReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            if (powerManager != null) setPowerSave(powerManager.isPowerSaveMode());
+        }
+    };
+
+    QosController(Handler handler, long stepDownHoldMs, Listener listener) {
+        this.handler = handler;
+        this.stepDownHoldMs = stepDownHoldMs;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts listening for battery saver and thermal changes. The current state is applied
+     * right away, without hysteresis, and reported to the listener if it is not FULL.
+     */
+    void start(Context context) {
+        if (this.context != null) return;
+        this.context = context;
+        powerManager = context.getSystemService(PowerManager.class);
+        if (powerManager == null) return;
+        ContextCompat.registerReceiver(context, powerSaveReceiver,
+                new IntentFilter(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED), null, handler,
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            thermalListener = this::setThermalStatus;
+            powerManager.addThermalStatusListener(thermalListener);
+            thermalStatus = powerManager.getCurrentThermalStatus();
+        }
+        powerSave = powerManager.isPowerSaveMode();
+        Tier initial = tierFor(powerSave, thermalStatus);
+        if (initial != tier) transition(initial);
+    }
+
+    void stop() {
+        handler.removeCallbacks(stepDownRunnable);
+        if (context == null || powerManager == null) return;
+        context.unregisterReceiver(powerSaveReceiver);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && thermalListener != null) {
+            powerManager.removeThermalStatusListener(thermalListener);
+        }
+        context = null;
+    }
+
+    void setPowerSave(boolean powerSave) {
+        if (this.powerSave == powerSave) return;
+        this.powerSave = powerSave;
+        evaluate();
+    }
+
+    /** One of the PowerManager.THERMAL_STATUS_* values. */
+    void setThermalStatus(int status) {
+        if (thermalStatus == status) return;
+        thermalStatus = status;
+        evaluate();
+    }
+
+    Tier getTier() {
+        return tier;
+    }
+
+    int getTransitionCount() {
+        return transitionCount;
+    }
+
+    static Tier tierFor(boolean powerSave, int thermalStatus) {
+        boolean warm = thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE;
+        boolean hot = thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE;
+        if (hot || (powerSave && warm)) return Tier.MINIMAL;
+        if (powerSave || warm) return Tier.REDUCED;
+        return Tier.FULL;
+    }
+
+    private void evaluate() {
+        Tier wanted = tierFor(powerSave, thermalStatus);
+        if (wanted.ordinal() > tier.ordinal()) {
+            lowerSinceUptime = -1;
+            handler.removeCallbacks(stepDownRunnable);
+            transition(wanted);
+            return;
+        }
+        if (wanted == tier) {
+            // the dip ended before the hold ran out
+            lowerSinceUptime = -1;
+            handler.removeCallbacks(stepDownRunnable);
+            return;
+        }
+        long now = SystemClock.uptimeMillis();
+        if (lowerSinceUptime < 0) lowerSinceUptime = now;
+        long remaining = lowerSinceUptime + stepDownHoldMs - now;
+        if (remaining > 0) {
+            handler.removeCallbacks(stepDownRunnable);
+            handler.postDelayed(stepDownRunnable, remaining);
+            return;
+        }
+        lowerSinceUptime = -1;
+        transition(wanted);
+    }
+
+    private void transition(Tier to) {
+        int i = historyNext;
+        historyAtMillis[i] = SystemClock.uptimeMillis();
+        historyFrom[i] = tier;
+        historyTo[i] = to;
+        historyPowerSave[i] = powerSave;
+        historyThermal[i] = thermalStatus;
+        historyNext = (i + 1) % HISTORY;
+        transitionCount++;
+        tier = to;
+        listener.onTierChanged(to);
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("qos:");
+        writer.print(prefix);
+        writer.print("  tier=");
+        writer.println(tier.name().toLowerCase(Locale.ROOT));
+        writer.print(prefix);
+        writer.print("  power_save=");
+        writer.println(powerSave);
+        writer.print(prefix);
+        writer.print("  thermal_status=");
+        writer.println(thermalStatus);
+        writer.print(prefix);
+        writer.print("  transitions=");
+        writer.println(transitionCount);
+        // oldest first
+        int stored = Math.min(transitionCount, HISTORY);
+        for (int n = 0; n < stored; n++) {
+            int i = (historyNext - stored + n + HISTORY) % HISTORY;
+            writer.print(prefix);
+            writer.print("  transition at_ms=");
+            writer.print(historyAtMillis[i]);
+            writer.print(' ');
+            writer.print(historyFrom[i].name().toLowerCase(Locale.ROOT));
+            writer.print("->");
+            writer.print(historyTo[i].name().toLowerCase(Locale.ROOT));
+            writer.print(" power_save=");
+            writer.print(historyPowerSave[i]);
+            writer.print(" thermal_status=");
+            writer.println(historyThermal[i]);
+        }
+    }
+}
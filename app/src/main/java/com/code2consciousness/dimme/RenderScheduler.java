@@ -0,0 +1,96 @@
+package com.code2consciousness.dimme;
+
+import android.view.Choreographer;
+
+/**
+ * Batches view updates for the overlay and floating controls into one pass per frame.
+ *
+ * State changes only mark dirty flags. The first invalidate in a frame posts a single
+ * frame callback; later ones merge into it. The callback applies the pending work in a
+ * fixed order: overlay dim, then control contents, then window layout. Main thread only.
+ */
+final class RenderScheduler implements Choreographer.FrameCallback {
+
+    /** Overlay alpha changed or is animating. */
+    static final int DIRTY_DIM = 1;
+    /** Pause icon/tint or SeekBar progress changed; never needs a window layout. */
+    static final int DIRTY_CONTROLS = 1 << 1;
+    /** The controls window size may have changed and must go through updateViewLayout. */
+    static final int DIRTY_LAYOUT = 1 << 2;
+
+    interface Target {
+        /** Gets the frame time so animations can be stepped from the same callback. */
+        void renderDim(long frameTimeNanos);
+
+        void renderControls();
+
+        void renderLayout();
+    }
+
+    private final FrameScheduler frames;
+    private final Target target;
+
+    private int dirty;
+    private long minFrameIntervalNanos;
+    private long lastAppliedNanos;
+    private long framesApplied;
+    private long updatesMerged;
+
+    RenderScheduler(FrameScheduler frames, Target target) {
+        this.frames = frames;
+        this.target = target;
+    }
+
+    void invalidate(int flags) {
+        if (flags == 0) return;
+        if (dirty == 0) {
+            frames.postFrameCallback(this);
+        } else {
+            updatesMerged++;
+        }
+        dirty |= flags;
+    }
+
+    /**
+     * Applies pending work at most once per interval (0 = every frame); frames in between
+     * keep the work pending. Used to lower the update rate under power or thermal pressure.
+     */
+    void setMinFrameIntervalNanos(long intervalNanos) {
+        minFrameIntervalNanos = Math.max(0, intervalNanos);
+    }
+
+    /** Drops pending work without applying it. */
+    void cancel() {
+        if (dirty != 0) frames.removeFrameCallback(this);
+        dirty = 0;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (dirty == 0) return;
+        if (minFrameIntervalNanos > 0 && framesApplied > 0
+                && frameTimeNanos - lastAppliedNanos < minFrameIntervalNanos) {
+            frames.postFrameCallback(this);
+            return;
+        }
+        int flags = dirty;
+        dirty = 0;
+        lastAppliedNanos = frameTimeNanos;
+        framesApplied++;
+        if ((flags & DIRTY_DIM) != 0) target.renderDim(frameTimeNanos);
+        if ((flags & DIRTY_CONTROLS) != 0) target.renderControls();
+        if ((flags & DIRTY_LAYOUT) != 0) target.renderLayout();
+    }
+
+    boolean isPending() {
+        return dirty != 0;
+    }
+
+    long getFramesApplied() {
+        return framesApplied;
+    }
+
+    long getUpdatesMerged() {
+        return updatesMerged;
+    }
+}
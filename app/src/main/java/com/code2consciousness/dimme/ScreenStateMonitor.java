@@ -0,0 +1,169 @@
+package com.code2consciousness.dimme;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.hardware.display.DisplayManager;
+import android.os.Handler;
+import android.os.PowerManager;
+import android.view.Display;
+
+import androidx.core.content.ContextCompat;
+
+import java.io.PrintWriter;
+
+/**
+ * Tells the service whether anything it draws can be seen.
+ *
+ * The screen counts as visible while the device is interactive or the default display is
+ * on. Waking up turns interactive true before the display shows its first frame, so the
+ * windows come back before the user can see the screen; going to sleep keeps the display
+ * on until the screen-off animation has finished, so the dim stays up until then. Dozing
+ * (always-on display under the keyguard) counts as off. A locked but lit screen still
+ * counts as visible: the dim stays on the lock screen. Inputs are the display listener
+ * and the SCREEN_ON/SCREEN_OFF broadcasts; the listener is only called on changes, on
+ * the handler's thread.
+ */
+final class ScreenStateMonitor {
+
+    interface Listener {
+        void onScreenVisibilityChanged(boolean visible);
+    }
+
+    private final Context context;
+    private final Handler handler;
+    private final Listener listener;
+    private final DisplayManager displayManager;
+    private final PowerManager powerManager;
+
+    private boolean started;
+    private boolean visible = true;
+    private boolean interactive = true;
+    private int displayState = Display.STATE_UNKNOWN;
+    private int changeCount;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            refresh();
+        }
+    };
+
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            if (displayId == Display.DEFAULT_DISPLAY) refresh();
+        }
+    };
+
+    ScreenStateMonitor(Context context, Handler handler, Listener listener) {
+        this.context = context;
+        this.handler = handler;
+        this.listener = listener;
+        displayManager = context.getSystemService(DisplayManager.class);
+        powerManager = context.getSystemService(PowerManager.class);
+    }
+
+    /** Starts listening; reads the current state without calling the listener. */
+    void start() {
+        if (started) return;
+        started = true;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        ContextCompat.registerReceiver(context, receiver, filter, null, handler,
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+        if (displayManager != null) displayManager.registerDisplayListener(displayListener, handler);
+        read();
+        visible = isVisible(displayState, interactive);
+    }
+
+    void stop() {
+        if (!started) return;
+        started = false;
+        context.unregisterReceiver(receiver);
+        if (displayManager != null) displayManager.unregisterDisplayListener(displayListener);
+    }
+
+    boolean isVisible() {
+        return visible;
+    }
+
+    /** Re-reads the display and power state and reports a visibility change. */
+    void refresh() {
+        if (!started) return;
+        read();
+        boolean nowVisible = isVisible(displayState, interactive);
+        if (nowVisible == visible) return;
+        visible = nowVisible;
+        changeCount++;
+        listener.onScreenVisibilityChanged(nowVisible);
+    }
+
+    private void read() {
+        Display display = displayManager != null ? displayManager.getDisplay(Display.DEFAULT_DISPLAY) : null;
+        displayState = display != null ? display.getState() : Display.STATE_UNKNOWN;
+        interactive = powerManager == null || powerManager.isInteractive();
+    }
+
+    static boolean isVisible(int displayState, boolean interactive) {
+        if (interactive) return true;
+        switch (displayState) {
+            case Display.STATE_OFF:
+            case Display.STATE_DOZE:
+            case Display.STATE_DOZE_SUSPEND:
+                return false;
+            default:
+                // on, VR, or unknown: keep drawing rather than risk an undimmed screen
+                return true;
+        }
+    }
+
+    // Display.stateToString is hidden API
+    static String displayStateName(int displayState) {
+        switch (displayState) {
+            case Display.STATE_OFF:
+                return "OFF";
+            case Display.STATE_ON:
+                return "ON";
+            case Display.STATE_DOZE:
+                return "DOZE";
+            case Display.STATE_DOZE_SUSPEND:
+                return "DOZE_SUSPEND";
+            case Display.STATE_VR:
+                return "VR";
+            case Display.STATE_ON_SUSPEND:
+                return "ON_SUSPEND";
+            case Display.STATE_UNKNOWN:
+                return "UNKNOWN";
+            default:
+                return Integer.toString(displayState);
+        }
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("screen:");
+        writer.print(prefix);
+        writer.print("  visible=");
+        writer.println(visible);
+        writer.print(prefix);
+        writer.print("  interactive=");
+        writer.println(interactive);
+        writer.print(prefix);
+        writer.print("  display_state=");
+        writer.println(displayStateName(displayState));
+        writer.print(prefix);
+        writer.print("  changes=");
+        writer.println(changeCount);
+    }
+}
@@ -0,0 +1,173 @@
+package com.code2consciousness.dimme;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counters and latency histograms for the service hot paths, printed by the service dump.
+ *
+ * Recording is lock-free and allocation-free (atomic increments into fixed arrays), so it
+ * can stay on in production. The dump format is one "name=value" or
+ * "name count=.. sum_us=.. max_us=.. p50_us=.. p99_us=.. buckets=.." line per metric;
+ * names and field order are stable for scripts. Notification, frame and queue counts are
+ * kept by their own components and printed next to these by the service.
+ */
+final class ServiceMetrics {
+
+    enum Counter {
+        WM_ADD,
+        WM_REMOVE,
+        WM_UPDATE,
+        /** Floating control bar (seek track and pause button). */
+        DIM_CHANGES_SEEKBAR,
+        /** PLUS/MINUS/PAUSE/UPDATE_DIM intents from the notification. */
+        DIM_CHANGES_NOTIFICATION,
+        /** Bound clients through DimControl (MainActivity). */
+        DIM_CHANGES_ACTIVITY,
+        /** Screen-off suspensions of the overlay windows. */
+        SCREEN_SUSPENDS,
+        /** Idle auto-hides of the floating controls into the edge handle. */
+        CONTROLS_COLLAPSES,
+        /** Quick Settings tile taps that started or changed the dim. */
+        TILE_TAPS
+    }
+
+    enum Timer {
+        ON_START_COMMAND,
+        /** Runs on the notification worker since the build moved off the main thread. */
+        BUILD_NOTIFICATION,
+        SHOW_FLOATING_CONTROLS,
+        /** From a dim command arriving to the first frame that applies the new alpha. */
+        COMMAND_TO_ALPHA,
+        /** Detaching the windows and stopping notification work on screen-off. */
+        SCREEN_SUSPEND,
+        /** Re-attaching the windows on screen-on, at full dim. */
+        SCREEN_RESUME,
+        /** From the screen-on signal to the first frame drawn after it. */
+        SCREEN_RESUME_TO_FRAME,
+        /** From a Quick Settings tap to the first frame that applies it (cold start included). */
+        TILE_TAP_TO_DIM
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final Timer[] TIMERS = Timer.values();
+
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTERS.length);
+    private final Histogram[] histograms = new Histogram[TIMERS.length];
+
+    ServiceMetrics() {
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new Histogram();
+    }
+
+    void increment(Counter counter) {
+        counters.incrementAndGet(counter.ordinal());
+    }
+
+    void add(Counter counter, long delta) {
+        counters.addAndGet(counter.ordinal(), delta);
+    }
+
+    long get(Counter counter) {
+        return counters.get(counter.ordinal());
+    }
+
+    void record(Timer timer, long nanos) {
+        histograms[timer.ordinal()].record(nanos);
+    }
+
+    Histogram histogram(Timer timer) {
+        return histograms[timer.ordinal()];
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("metrics:");
+        for (Counter counter : COUNTERS) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(counter.name().toLowerCase(Locale.ROOT));
+            writer.print('=');
+            writer.println(get(counter));
+        }
+        for (Timer timer : TIMERS) {
+            writer.print(prefix);
+            writer.print("  latency_");
+            writer.print(timer.name().toLowerCase(Locale.ROOT));
+            writer.print(' ');
+            histogram(timer).dump(writer);
+            writer.println();
+        }
+    }
+
+    /**
+     * Latency histogram with power-of-two microsecond buckets: bucket i counts samples up to
+     * 2^i us, the last bucket everything above.
+     */
+    static final class Histogram {
+
+        static final int BUCKETS = 22; // up to ~1 s, then overflow
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long nanos) {
+            long micros = Math.max(0, nanos / 1000L);
+            buckets.incrementAndGet(bucketOf(micros));
+            count.incrementAndGet();
+            sumMicros.addAndGet(micros);
+            long max;
+            while (micros > (max = maxMicros.get())) {
+                if (maxMicros.compareAndSet(max, micros)) break;
+            }
+        }
+
+        static int bucketOf(long micros) {
+            if (micros <= 1) return 0;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros - 1); // ceil(log2)
+            return Math.min(bucket, BUCKETS - 1);
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        long getMaxMicros() {
+            return maxMicros.get();
+        }
+
+        /** Upper bound of the bucket holding the given percentile, in microseconds. */
+        long percentileMicros(int percentile) {
+            long total = count.get();
+            if (total == 0) return 0;
+            long rank = (total * percentile + 99) / 100;
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return i == BUCKETS - 1 ? maxMicros.get() : 1L << i;
+            }
+            return maxMicros.get();
+        }
+
+        void dump(PrintWriter writer) {
+            writer.print("count=");
+            writer.print(count.get());
+            writer.print(" sum_us=");
+            writer.print(sumMicros.get());
+            writer.print(" max_us=");
+            writer.print(maxMicros.get());
+            writer.print(" p50_us=");
+            writer.print(percentileMicros(50));
+            writer.print(" p99_us=");
+            writer.print(percentileMicros(99));
+            writer.print(" buckets=");
+            for (int i = 0; i < BUCKETS; i++) {
+                if (i > 0) writer.print(',');
+                writer.print(buckets.get(i));
+            }
+        }
+    }
+}
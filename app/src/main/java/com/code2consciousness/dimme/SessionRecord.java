@@ -0,0 +1,145 @@
+package com.code2consciousness.dimme;
+
+import androidx.annotation.Nullable;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import java.nio.ByteBuffer;
+
+/**
+ * What the service needs to come back exactly as it was after a START_STICKY restart.
+ * Serialized to a fixed 25-byte layout:
+ *
+ * <pre>
+ *   int  magic/version ('DIM2')
+ *   int  dim level (per-mille)
+ *   byte flags (paused, controls visible, has controls position)
+ *   int  controls x
+ *   int  controls y
+ *   int  user's system brightness while it is lowered, else -1
+ *   int  user's system brightness mode while it is lowered, else -1
+ * </pre>
+ *
+ * 'DIM1' records (the first 17 bytes, no brightness) are still read.
+ */
+final class SessionRecord {
+
+    static final int SIZE = 25;
+    static final int SIZE_V1 = 17;
+    private static final int MAGIC = 0x44494D32; // "DIM2"
+    private static final int MAGIC_V1 = 0x44494D31; // "DIM1"
+
+    static final int NO_BRIGHTNESS = -1;
+
+    private static final int FLAG_PAUSED = 1;
+    private static final int FLAG_CONTROLS_VISIBLE = 1 << 1;
+    private static final int FLAG_HAS_POSITION = 1 << 2;
+
+    final int dimLevel;
+    final boolean paused;
+    final boolean controlsVisible;
+    final boolean hasControlsPosition;
+    final int controlsX;
+    final int controlsY;
+    // the brightness to put back if the process died with the system setting lowered
+    final int originalBrightness;
+    final int originalBrightnessMode;
+
+    SessionRecord(int dimLevel, boolean paused, boolean controlsVisible,
+                  boolean hasControlsPosition, int controlsX, int controlsY) {
+        this(dimLevel, paused, controlsVisible, hasControlsPosition, controlsX, controlsY,
+                NO_BRIGHTNESS, NO_BRIGHTNESS);
+    }
+
+    SessionRecord(int dimLevel, boolean paused, boolean controlsVisible,
+                  boolean hasControlsPosition, int controlsX, int controlsY,
+                  int originalBrightness, int originalBrightnessMode) {
+        this.dimLevel = DimLevel.clamp(dimLevel);
+        this.paused = paused;
+        this.controlsVisible = controlsVisible;
+        this.hasControlsPosition = hasControlsPosition;
+        this.controlsX = controlsX;
+        this.controlsY = controlsY;
+        boolean hasBrightness = originalBrightness >= 0 && originalBrightnessMode >= 0;
+        this.originalBrightness = hasBrightness ? originalBrightness : NO_BRIGHTNESS;
+        this.originalBrightnessMode = hasBrightness ? originalBrightnessMode : NO_BRIGHTNESS;
+    }
+
+    boolean hasOriginalBrightness() {
+        return originalBrightness != NO_BRIGHTNESS;
+    }
+
+    byte[] encode() {
+        int flags = (paused ? FLAG_PAUSED : 0)
+                | (controlsVisible ? FLAG_CONTROLS_VISIBLE : 0)
+                | (hasControlsPosition ? FLAG_HAS_POSITION : 0);
+        return ByteBuffer.allocate(SIZE)
+                .putInt(MAGIC)
+                .putInt(dimLevel)
+                .put((byte) flags)
+                .putInt(controlsX)
+                .putInt(controlsY)
+                .putInt(originalBrightness)
+                .putInt(originalBrightnessMode)
+                .array();
+    }
+
+    /** Returns null for missing, truncated or foreign data. */
+    @Nullable
+    static SessionRecord decode(@Nullable byte[] data) {
+        if (data == null || data.length < SIZE_V1) return null;
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int magic = buffer.getInt();
+        boolean v1 = magic == MAGIC_V1;
+        if (!v1 && (magic != MAGIC || data.length < SIZE)) return null;
+        int level = buffer.getInt();
+        int flags = buffer.get();
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int brightness = v1 ? NO_BRIGHTNESS : buffer.getInt();
+        int mode = v1 ? NO_BRIGHTNESS : buffer.getInt();
+        return new SessionRecord(level,
+                (flags & FLAG_PAUSED) != 0,
+                (flags & FLAG_CONTROLS_VISIBLE) != 0,
+                (flags & FLAG_HAS_POSITION) != 0,
+                x, y, brightness, mode);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SessionRecord)) return false;
+        SessionRecord other = (SessionRecord) o;
+        return dimLevel == other.dimLevel
+                && paused == other.paused
+                && controlsVisible == other.controlsVisible
+                && hasControlsPosition == other.hasControlsPosition
+                && controlsX == other.controlsX
+                && controlsY == other.controlsY
+                && originalBrightness == other.originalBrightness
+                && originalBrightnessMode == other.originalBrightnessMode;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = dimLevel;
+        result = 31 * result + (paused ? 1 : 0);
+        result = 31 * result + (controlsVisible ? 1 : 0);
+        result = 31 * result + (hasControlsPosition ? 1 : 0);
+        result = 31 * result + controlsX;
+        result = 31 * result + controlsY;
+        result = 31 * result + originalBrightness;
+        result = 31 * result + originalBrightnessMode;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "SessionRecord{level=" + dimLevel
+                + ", paused=" + paused
+                + ", controlsVisible=" + controlsVisible
+                + ", position=" + (hasControlsPosition ? controlsX + "," + controlsY : "none")
+                + ", brightness=" + (hasOriginalBrightness()
+                        ? originalBrightness + "/" + originalBrightnessMode : "none") + '}';
+    }
+}
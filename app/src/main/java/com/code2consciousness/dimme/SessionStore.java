@@ -0,0 +1,85 @@
+package com.code2consciousness.dimme;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Persists the {@link SessionRecord} in a small fixed-layout file.
+ *
+ * Reads are synchronous (one tiny file, no XML parsing) so onCreate can restore before
+ * the first frame. Writes go to a background thread and are coalesced: only the latest
+ * record within the delay window is written.
+ */
+final class SessionStore {
+
+    private static final String TAG = "SessionStore";
+    static final String FILE_NAME = "session.bin";
+    static final long WRITE_DELAY_MS = 250;
+
+    private final AtomicFile file;
+    private final HandlerThread thread;
+    private final Handler handler;
+    private final AtomicReference<SessionRecord> pending = new AtomicReference<>();
+    private SessionRecord lastWritten;
+
+    private final Runnable writeRunnable = this::writePending;
+
+    SessionStore(File dir) {
+        file = new AtomicFile(new File(dir, FILE_NAME));
+        thread = new HandlerThread("DimMe-session");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    @Nullable
+    SessionRecord read() {
+        try {
+            return SessionRecord.decode(file.readFully());
+        } catch (IOException e) {
+            // no session yet
+            return null;
+        }
+    }
+
+    /** Schedules the record to be written; later calls within the window replace it. */
+    void save(SessionRecord record) {
+        if (pending.getAndSet(record) == null) {
+            handler.postDelayed(writeRunnable, WRITE_DELAY_MS);
+        }
+    }
+
+    /** Writes any pending record on the calling thread, e.g. before the service dies. */
+    void flush() {
+        handler.removeCallbacks(writeRunnable);
+        writePending();
+    }
+
+    void close() {
+        flush();
+        thread.quitSafely();
+    }
+
+    private synchronized void writePending() {
+        SessionRecord record = pending.getAndSet(null);
+        if (record == null || record.equals(lastWritten)) return;
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(record.encode());
+            file.finishWrite(out);
+            lastWritten = record;
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to persist session", e);
+            if (out != null) file.failWrite(out);
+        }
+    }
+}
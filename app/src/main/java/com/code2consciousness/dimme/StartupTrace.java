@@ -0,0 +1,87 @@
+package com.code2consciousness.dimme;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Timestamps of the service start-up phases, relative to service creation.
+ * Used by tests to assert time-to-first-dim and printed in the service dump.
+ */
+final class StartupTrace {
+
+    enum Phase {
+        CREATED,
+        FOREGROUND,
+        /** Dim overlay window added (or skipped because the session is paused). */
+        OVERLAY,
+        CONTROLS,
+        NOTIFICATION
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private final long[] phaseNanos = new long[PHASES.length];
+    // the phase that gave up and ended the session, or null
+    private Phase failedPhase;
+
+    StartupTrace() {
+        Arrays.fill(phaseNanos, -1);
+    }
+
+    void begin() {
+        Arrays.fill(phaseNanos, -1);
+        phaseNanos[Phase.CREATED.ordinal()] = SystemClock.elapsedRealtimeNanos();
+        failedPhase = null;
+    }
+
+    /** Records that a phase could not be reached; it stays unmarked. */
+    void fail(Phase phase) {
+        failedPhase = phase;
+    }
+
+    Phase getFailedPhase() {
+        return failedPhase;
+    }
+
+    /** Records the first time a phase is reached; later marks are ignored. */
+    void mark(Phase phase) {
+        if (phaseNanos[phase.ordinal()] < 0) {
+            phaseNanos[phase.ordinal()] = SystemClock.elapsedRealtimeNanos();
+        }
+    }
+
+    boolean reached(Phase phase) {
+        return phaseNanos[phase.ordinal()] >= 0;
+    }
+
+    /** Nanoseconds from creation to the phase, or -1 if not reached. */
+    long elapsedNanos(Phase phase) {
+        long created = phaseNanos[Phase.CREATED.ordinal()];
+        long at = phaseNanos[phase.ordinal()];
+        if (created < 0 || at < 0) return -1;
+        return at - created;
+    }
+
+    long timeToFirstDimMillis() {
+        long nanos = elapsedNanos(Phase.OVERLAY);
+        return nanos < 0 ? -1 : nanos / 1_000_000L;
+    }
+
+    void dump(PrintWriter writer, String prefix) {
+        writer.print(prefix);
+        writer.println("startup:");
+        for (Phase phase : PHASES) {
+            writer.print(prefix);
+            writer.print("  ");
+            writer.print(phase.name().toLowerCase(Locale.ROOT));
+            writer.print("_us=");
+            long nanos = elapsedNanos(phase);
+            writer.println(nanos < 0 ? -1 : nanos / 1000L);
+        }
+        writer.print(prefix);
+        writer.print("  failed=");
+        writer.println(failedPhase == null ? "none" : failedPhase.name().toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,248 @@
+package com.code2consciousness.dimme;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityNodeProvider;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ControlBarViewTest {
+
+    /** Canvas whose draw calls do nothing, so only onDraw's own allocations are measured. */
+    static final class NoOpCanvas extends Canvas {
+        int drawCalls;
+
+        @Override
+        public void drawPath(Path path, Paint paint) {
+            drawCalls++;
+        }
+
+        @Override
+        public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+            drawCalls++;
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, Paint paint) {
+            drawCalls++;
+        }
+
+        @Override
+        public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+            drawCalls++;
+        }
+    }
+
+    private ControlBarView bar;
+    private int userProgress = -1;
+    private int pauseClicks;
+    private int stopClicks;
+    private int minimizeClicks;
+    private int dragEvents;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        bar = new ControlBarView(context);
+        bar.setListener(new ControlBarView.Listener() {
+            @Override
+            public void onProgressChanged(int progress, boolean fromUser) {
+                if (fromUser) userProgress = progress;
+            }
+
+            @Override
+            public void onPauseClicked() {
+                pauseClicks++;
+            }
+
+            @Override
+            public void onStopClicked() {
+                stopClicks++;
+            }
+
+            @Override
+            public void onMinimizeClicked() {
+                minimizeClicks++;
+            }
+        });
+        bar.setDragListener((v, event) -> {
+            dragEvents++;
+            return true;
+        });
+        layout();
+    }
+
+    private void layout() {
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        bar.measure(spec, spec);
+        bar.layout(0, 0, bar.getMeasuredWidth(), bar.getMeasuredHeight());
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    @Test
+    public void onDrawAllocatesNothing() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        NoOpCanvas canvas = new NoOpCanvas();
+        // warm up, and measure the cost of the measurement itself
+        for (int i = 0; i < 10; i++) bar.draw(canvas);
+        long overhead = -allocatedBytes() + allocatedBytes();
+
+        long before = allocatedBytes();
+        for (int i = 0; i < 1000; i++) {
+            bar.setPaused(i % 2 == 0);
+            bar.setProgress(i % DimLevel.PROGRESS_MAX);
+            bar.onDraw(canvas);
+        }
+        long allocated = allocatedBytes() - before;
+
+        assertTrue(canvas.drawCalls > 0);
+        assertTrue("onDraw allocated " + allocated + " bytes", allocated <= overhead);
+    }
+
+    @Test
+    public void progressChangeDoesNotRequestLayout() {
+        long layouts = bar.getLayoutCount();
+        for (int i = 0; i <= DimLevel.PROGRESS_MAX; i++) {
+            bar.setProgress(i);
+            bar.setPaused(i % 2 == 0);
+            assertFalse(bar.isLayoutRequested());
+        }
+        assertEquals(layouts, bar.getLayoutCount());
+
+        bar.setSeekWidth(bar.getSeekWidth() / 2);
+        assertTrue(bar.isLayoutRequested());
+    }
+
+    @Test
+    public void hitTestingRoutesTouches() {
+        int y = bar.getHeight() / 2;
+        // the track starts after the minimize icon; tap near its right end
+        float seekRight = bar.getWidth() - 15 - 100 - 32 - 24 - 90 - 16 - 12;
+        touch(MotionEvent.ACTION_DOWN, seekRight, y);
+        touch(MotionEvent.ACTION_UP, seekRight, y);
+        assertTrue(userProgress > DimLevel.PROGRESS_MAX / 2);
+
+        float pauseX = bar.getWidth() - 15 - 100 - 32 - 24 - 45;
+        touch(MotionEvent.ACTION_DOWN, pauseX, y);
+        touch(MotionEvent.ACTION_UP, pauseX, y);
+        assertEquals(1, pauseClicks);
+
+        // the rounded background's edge is not a control; it drags the window
+        touch(MotionEvent.ACTION_DOWN, 2, 1);
+        touch(MotionEvent.ACTION_MOVE, 40, 1);
+        touch(MotionEvent.ACTION_UP, 40, 1);
+        assertEquals(3, dragEvents);
+        assertEquals(1, pauseClicks);
+    }
+
+    @Test
+    public void accessibilityExposesEachControl() {
+        AccessibilityNodeProvider provider = bar.getAccessibilityNodeProvider();
+        assertNotNull(provider);
+        assertEquals(4, provider.createAccessibilityNodeInfo(View.NO_ID).getChildCount());
+
+        bar.setProgress(40);
+        AccessibilityNodeInfo seek = provider.createAccessibilityNodeInfo(ControlBarView.TARGET_SEEK);
+        assertEquals("android.widget.SeekBar", seek.getClassName());
+        assertEquals(40f, seek.getRangeInfo().getCurrent(), 0f);
+        assertEquals(DimLevel.PROGRESS_MAX, seek.getRangeInfo().getMax(), 0f);
+        assertTrue(seek.getActionList().contains(AccessibilityNodeInfo.AccessibilityAction.ACTION_SET_PROGRESS));
+        assertTrue(seek.getActionList().contains(AccessibilityNodeInfo.AccessibilityAction.ACTION_SCROLL_FORWARD));
+        assertTrue(seek.getActionList().contains(AccessibilityNodeInfo.AccessibilityAction.ACTION_SCROLL_BACKWARD));
+
+        AccessibilityNodeInfo pause = provider.createAccessibilityNodeInfo(ControlBarView.TARGET_PAUSE);
+        assertEquals("Pause dimming", pause.getContentDescription().toString());
+        bar.setPaused(true);
+        pause = provider.createAccessibilityNodeInfo(ControlBarView.TARGET_PAUSE);
+        assertEquals("Resume dimming", pause.getContentDescription().toString());
+        assertEquals("Stop dimming",
+                provider.createAccessibilityNodeInfo(ControlBarView.TARGET_STOP).getContentDescription().toString());
+        assertEquals("Hide controls",
+                provider.createAccessibilityNodeInfo(ControlBarView.TARGET_MINIMIZE).getContentDescription().toString());
+    }
+
+    @Test
+    public void accessibilityActionsReachTheListener() {
+        AccessibilityNodeProvider provider = bar.getAccessibilityNodeProvider();
+        bar.setProgress(40);
+
+        assertTrue(provider.performAction(ControlBarView.TARGET_SEEK, AccessibilityNodeInfo.ACTION_SCROLL_FORWARD, null));
+        assertEquals(40 + ControlBarView.ACCESSIBILITY_STEP, userProgress);
+        assertTrue(provider.performAction(ControlBarView.TARGET_SEEK, AccessibilityNodeInfo.ACTION_SCROLL_BACKWARD, null));
+        assertEquals(40, userProgress);
+
+        Bundle args = new Bundle();
+        args.putFloat(AccessibilityNodeInfo.ACTION_ARGUMENT_PROGRESS_VALUE, 75f);
+        assertTrue(provider.performAction(ControlBarView.TARGET_SEEK, android.R.id.accessibilityActionSetProgress, args));
+        assertEquals(75, userProgress);
+        assertEquals(75, bar.getProgress());
+
+        provider.performAction(ControlBarView.TARGET_PAUSE, AccessibilityNodeInfo.ACTION_CLICK, null);
+        provider.performAction(ControlBarView.TARGET_STOP, AccessibilityNodeInfo.ACTION_CLICK, null);
+        provider.performAction(ControlBarView.TARGET_MINIMIZE, AccessibilityNodeInfo.ACTION_CLICK, null);
+        assertEquals(1, pauseClicks);
+        assertEquals(1, stopClicks);
+        assertEquals(1, minimizeClicks);
+    }
+
+    @Test
+    public void collapsedHandleHasNoVirtualControls() {
+        bar.setCollapsed(true);
+        layout();
+        assertEquals(0, bar.getAccessibilityNodeProvider().createAccessibilityNodeInfo(View.NO_ID).getChildCount());
+    }
+
+    private void touch(int action, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(now, now, action, x, y, 0);
+        bar.onTouchEvent(event);
+        event.recycle();
+    }
+
+    @Test
+    public void iconsFollowDensityAndNightModeChanges() {
+        Configuration same = new Configuration(bar.getResources().getConfiguration());
+        bar.dispatchConfigurationChanged(same);
+        assertFalse("nothing to redo for the same density and theme", bar.isLayoutRequested());
+
+        RuntimeEnvironment.setQualifiers("+xhdpi-night");
+        Configuration changed = bar.getResources().getConfiguration();
+        bar.dispatchConfigurationChanged(changed);
+
+        assertEquals(changed.densityDpi, bar.getIconDensityDpi());
+        assertTrue(bar.isLayoutRequested());
+        layout();
+        assertTrue(bar.getWidth() > 0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.code2consciousness.dimme;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DimCommandQueueTest {
+
+    private ManualFrameScheduler frames;
+    private DimCommandQueue queue;
+    private boolean paused;
+    private int level;
+    private int applyCount;
+
+    @Before
+    public void setUp() {
+        frames = new ManualFrameScheduler();
+        level = DimLevel.DEFAULT;
+        queue = new DimCommandQueue(frames, DimCommandQueue.DEFAULT_WINDOW_NANOS, new DimCommandQueue.Sink() {
+            @Override
+            public boolean isPaused() {
+                return paused;
+            }
+
+            @Override
+            public void apply(int levelDelta, boolean togglePause) {
+                applyCount++;
+                if (togglePause) paused = !paused;
+                level = DimLevel.clamp(level + levelDelta);
+            }
+        });
+    }
+
+    private void runFrames() {
+        while (frames.hasPending()) frames.frame();
+    }
+
+    @Test
+    public void plusBurstFoldsIntoOneChange() {
+        for (int i = 0; i < 6; i++) queue.enqueueNudge(-DimLevel.STEP);
+        runFrames();
+
+        assertEquals(1, applyCount);
+        assertEquals(DimLevel.DEFAULT - 6 * DimLevel.STEP, level);
+    }
+
+    @Test
+    public void pairedPauseTogglesCancel() {
+        queue.enqueueTogglePause();
+        queue.enqueueTogglePause();
+        runFrames();
+
+        assertEquals(0, applyCount);
+        assertFalse(paused);
+    }
+
+    @Test
+    public void nudgesAfterQueuedPauseAreDropped() {
+        queue.enqueueNudge(DimLevel.STEP);
+        queue.enqueueTogglePause();
+        queue.enqueueNudge(DimLevel.STEP);
+        runFrames();
+
+        assertTrue(paused);
+        assertEquals(DimLevel.DEFAULT + DimLevel.STEP, level);
+    }
+
+    @Test
+    public void limitsStayExact() {
+        for (int i = 0; i < 25; i++) queue.enqueueNudge(DimLevel.STEP);
+        runFrames();
+        assertEquals(DimLevel.MAX, level);
+        assertTrue(DimLevel.isAtMax(level));
+
+        for (int i = 0; i < 20; i++) queue.enqueueNudge(-DimLevel.STEP);
+        runFrames();
+        assertEquals(DimLevel.MIN, level);
+        assertTrue(DimLevel.isAtMin(level));
+    }
+
+    @Test
+    public void waitsForBurstWindowBeforeApplying() {
+        queue.enqueueNudge(-DimLevel.STEP);
+        frames.frame();
+        queue.enqueueNudge(-DimLevel.STEP);
+        frames.frame();
+        assertEquals(0, applyCount);
+
+        runFrames();
+        assertEquals(1, applyCount);
+        assertEquals(2, queue.getEnqueuedCount());
+        assertEquals(1, queue.getAppliedCount());
+    }
+}
@@ -0,0 +1,70 @@
+package com.code2consciousness.dimme;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DimRendererTest {
+
+    private static final int DIM_CHANGES = 50;
+
+    private RecordingWindowManager driveDimChanges(DimRenderer.Strategy strategy) {
+        TestDimOverlayService service = Robolectric.buildService(TestDimOverlayService.class).create().get();
+        service.setDimRenderer(strategy);
+        service.updateDim(0.9f);
+        RecordingWindowManager wm = service.recordingWindowManager;
+        assertEquals(1, wm.addCount);
+
+        wm.reset();
+        for (int i = 1; i <= DIM_CHANGES; i++) {
+            service.updateDim(i / 100f);
+        }
+        // repeating the same value is a no-op
+        service.updateDim(DIM_CHANGES / 100f);
+        assertEquals(0, wm.addCount);
+        assertEquals(0, wm.removeCount);
+        return wm;
+    }
+
+    @Test
+    public void viewAlphaNeverTouchesWindow() {
+        assertEquals(0, driveDimChanges(DimRenderer.Strategy.VIEW_ALPHA).updateCount);
+    }
+
+    @Test
+    public void backgroundColorNeverTouchesWindow() {
+        assertEquals(0, driveDimChanges(DimRenderer.Strategy.BACKGROUND_COLOR).updateCount);
+    }
+
+    @Test
+    public void windowAlphaUpdatesLayoutOncePerChange() {
+        assertEquals(DIM_CHANGES, driveDimChanges(DimRenderer.Strategy.WINDOW_ALPHA).updateCount);
+    }
+
+    @Test
+    public void dimBehindUpdatesLayoutOncePerChange() {
+        assertEquals(DIM_CHANGES, driveDimChanges(DimRenderer.Strategy.DIM_BEHIND).updateCount);
+    }
+
+    @Test
+    public void switchingStrategyKeepsWindowAttached() {
+        TestDimOverlayService service = Robolectric.buildService(TestDimOverlayService.class).create().get();
+        service.updateDim(0.4f);
+        RecordingWindowManager wm = service.recordingWindowManager;
+        wm.reset();
+
+        service.setDimRenderer(DimRenderer.Strategy.DIM_BEHIND);
+        service.setDimRenderer(DimRenderer.Strategy.VIEW_ALPHA);
+
+        assertEquals(0, wm.addCount);
+        assertEquals(0, wm.removeCount);
+        assertEquals(2, wm.updateCount);
+        assertEquals(1, wm.attached.size());
+    }
+}
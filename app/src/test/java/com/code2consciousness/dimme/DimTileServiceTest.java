@@ -0,0 +1,210 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Intent;
+import android.os.Looper;
+import android.service.quicksettings.Tile;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.io.File;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class DimTileServiceTest {
+
+    private Application app;
+    private DimStateStore store;
+    private DimTileService tile;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        store = DimStateStore.getInstance();
+        store.reset();
+        tile = Robolectric.buildService(DimTileService.class).create().get();
+    }
+
+    @After
+    public void tearDown() {
+        new File(app.getFilesDir(), SessionStore.FILE_NAME).delete();
+    }
+
+    private static void settle(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+
+    private TestDimOverlayService startDimService() {
+        TestDimOverlayService service =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1).get();
+        shadowOf(app).setComponentNameAndServiceForBindService(
+                new ComponentName(app, DimOverlayService.class), service.onBind(null));
+        settle(500);
+        return service;
+    }
+
+    @Test
+    public void presetsStepUpThenTurnOff() {
+        assertEquals(250, DimTileService.nextPreset(DimLevel.MIN));
+        assertEquals(500, DimTileService.nextPreset(250));
+        assertEquals(750, DimTileService.nextPreset(740));
+        assertEquals(-1, DimTileService.nextPreset(750));
+        assertEquals(-1, DimTileService.nextPreset(DimLevel.MAX));
+    }
+
+    @Test
+    public void tileFollowsStateWithoutPolling() {
+        tile.onStartListening();
+        assertEquals(Tile.STATE_INACTIVE, tile.getRenderedState());
+        assertEquals("Off", tile.getRenderedSubtitle());
+
+        store.setOverlayVisible(true);
+        store.setDimLevel(400);
+        assertEquals(Tile.STATE_ACTIVE, tile.getRenderedState());
+        assertEquals("40%", tile.getRenderedSubtitle());
+
+        store.setPaused(true);
+        assertEquals(Tile.STATE_INACTIVE, tile.getRenderedState());
+        assertEquals("Paused", tile.getRenderedSubtitle());
+
+        // nothing is scheduled while the state is quiet, and unrelated changes push nothing
+        int updates = tile.getTileUpdates();
+        settle(10_000);
+        store.setAppVisible(true);
+        assertEquals(updates, tile.getTileUpdates());
+        assertTrue(shadowOf(Looper.getMainLooper()).isIdle());
+
+        tile.onStopListening();
+        store.setPaused(false);
+        assertEquals(updates, tile.getTileUpdates());
+    }
+
+    @Test
+    public void tapStartsTheServiceWithoutAnActivity() {
+        tile.onStartListening();
+        tile.onClick();
+
+        Intent started = shadowOf(app).getNextStartedService();
+        assertNotNull(started);
+        assertEquals(DimOverlayService.class.getName(), started.getComponent().getClassName());
+        assertTrue(started.hasExtra(DimOverlayService.EXTRA_TILE_TAP_NANOS));
+        assertNull(shadowOf(app).getNextStartedActivity());
+    }
+
+    @Test
+    public void coldStartTapIsTimedToTheFirstFrame() {
+        TestDimOverlayService service = Robolectric.buildService(TestDimOverlayService.class).create().get();
+        Intent intent = new Intent(app, DimOverlayService.class)
+                .putExtra(DimOverlayService.EXTRA_TILE_TAP_NANOS, android.os.SystemClock.elapsedRealtimeNanos());
+        service.onStartCommand(intent, 0, 1);
+        settle(500);
+
+        assertTrue(store.get().overlayVisible);
+        assertEquals(1, service.getMetrics().get(ServiceMetrics.Counter.TILE_TAPS));
+        assertEquals(1, service.getMetrics().histogram(ServiceMetrics.Timer.TILE_TAP_TO_DIM).getCount());
+    }
+
+    @Test
+    public void tapsCycleThroughPresetsOnTheRunningService() {
+        TestDimOverlayService service = startDimService();
+        tile.onStartListening();
+        settle(0);
+        assertTrue(tile.isControlBound());
+        DimControl control = (DimControl) service.onBind(null);
+        control.setDim(300);
+        settle(500);
+
+        tile.onClick();
+        settle(500);
+        assertEquals(500, store.get().dimLevel);
+        assertEquals("50%", tile.getRenderedSubtitle());
+
+        tile.onClick();
+        settle(500);
+        assertEquals(750, store.get().dimLevel);
+        assertEquals(2, service.getMetrics().get(ServiceMetrics.Counter.TILE_TAPS));
+        assertEquals(2, service.getMetrics().histogram(ServiceMetrics.Timer.TILE_TAP_TO_DIM).getCount());
+
+        // past the last preset: off
+        tile.onClick();
+        settle(500);
+        assertFalse(store.get().overlayVisible);
+        assertEquals(Tile.STATE_INACTIVE, tile.getRenderedState());
+        assertEquals("Off", tile.getRenderedSubtitle());
+        assertNull(shadowOf(app).getNextStartedActivity());
+    }
+
+    @Test
+    public void tapResumesAPausedDim() {
+        TestDimOverlayService service = startDimService();
+        tile.onStartListening();
+        settle(0);
+        DimControl control = (DimControl) service.onBind(null);
+        control.setDim(300);
+        control.setPaused(true);
+        settle(500);
+        assertEquals("Paused", tile.getRenderedSubtitle());
+
+        tile.onClick();
+        settle(500);
+
+        assertFalse(store.get().paused);
+        assertEquals(300, store.get().dimLevel);
+        assertEquals(Tile.STATE_ACTIVE, tile.getRenderedState());
+    }
+
+    @Test
+    public void levelChangesInsideOnePercentDoNotRenderAgain() {
+        tile.onStartListening();
+        store.setOverlayVisible(true);
+        store.setDimLevel(400);
+        int updates = tile.getTileUpdates();
+        String subtitle = tile.getRenderedSubtitle();
+
+        // drag frames that do not change the label
+        for (int level = 401; level < 410; level++) store.setDimLevel(level);
+        assertEquals(updates, tile.getTileUpdates());
+        assertSame(subtitle, tile.getRenderedSubtitle());
+
+        store.setDimLevel(410);
+        assertEquals(updates + 1, tile.getTileUpdates());
+        assertEquals("41%", tile.getRenderedSubtitle());
+    }
+
+    @Test
+    public void tapBeforeTheBindConnectsWaitsForIt() {
+        TestDimOverlayService service = startDimService();
+        DimControl control = (DimControl) service.onBind(null);
+        control.setDim(300);
+        settle(500);
+
+        tile.onStartListening();
+        // the connection is delivered on a later main loop pass
+        assertFalse(tile.isControlBound());
+        tile.onClick();
+        settle(500);
+
+        assertNull("the running service is not started again", shadowOf(app).getNextStartedService());
+        assertEquals(500, store.get().dimLevel);
+        assertEquals(1, service.getMetrics().get(ServiceMetrics.Counter.TILE_TAPS));
+    }
+}
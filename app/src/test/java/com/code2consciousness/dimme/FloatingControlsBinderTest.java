@@ -0,0 +1,107 @@
+package com.code2consciousness.dimme;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimLevel;
+import com.code2consciousness.dimme.core.DimState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class FloatingControlsBinderTest {
+
+    /** Resources that count drawable lookups. */
+    static final class CountingResources extends Resources {
+        int drawableLookups;
+
+        @SuppressWarnings("deprecation")
+        CountingResources(Resources base) {
+            super(base.getAssets(), base.getDisplayMetrics(), base.getConfiguration());
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public Drawable getDrawable(int id) {
+            drawableLookups++;
+            return super.getDrawable(id);
+        }
+
+        @Override
+        public Drawable getDrawable(int id, Theme theme) {
+            drawableLookups++;
+            return super.getDrawable(id, theme);
+        }
+
+        @Override
+        public Drawable getDrawableForDensity(int id, int density, Theme theme) {
+            drawableLookups++;
+            return super.getDrawableForDensity(id, density, theme);
+        }
+    }
+
+    private CountingResources resources;
+    private ControlBarView bar;
+    private FloatingControlsBinder binder;
+
+    @Before
+    public void setUp() {
+        Context app = ApplicationProvider.getApplicationContext();
+        resources = new CountingResources(app.getResources());
+        Context context = new ContextWrapper(app) {
+            @Override
+            public Resources getResources() {
+                return resources;
+            }
+        };
+        bar = new ControlBarView(context);
+        binder = new FloatingControlsBinder(bar);
+    }
+
+    @Test
+    public void stateUpdatesDoNoDrawableLookups() {
+        resources.drawableLookups = 0;
+        DimState state = DimState.INITIAL;
+        for (int i = 0; i < 50; i++) {
+            state = state.withPaused(i % 2 == 0).withDimLevel(DimLevel.STEP * (i % 20));
+            binder.bind(state);
+        }
+        assertEquals(0, resources.drawableLookups);
+    }
+
+    @Test
+    public void iconsArePreloadedByTheBar() {
+        assertTrue(resources.drawableLookups > 0);
+        resources.drawableLookups = 0;
+
+        binder.bind(DimState.INITIAL.withPaused(true));
+        assertTrue(bar.isPaused());
+        binder.bind(DimState.INITIAL);
+        assertFalse(bar.isPaused());
+        assertEquals(0, resources.drawableLookups);
+    }
+
+    @Test
+    public void unchangedStateWritesNothing() {
+        DimState state = DimState.INITIAL.withDimLevel(300);
+        binder.bind(state);
+        int writes = binder.getWriteCount();
+
+        binder.bind(state);
+        binder.bind(state.withAppVisible(true));
+
+        assertEquals(writes, binder.getWriteCount());
+        assertEquals(DimLevel.toProgress(300), bar.getProgress());
+    }
+}
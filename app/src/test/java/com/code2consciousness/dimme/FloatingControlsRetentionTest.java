@@ -0,0 +1,87 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Intent;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class FloatingControlsRetentionTest {
+
+    private ServiceController<TestDimOverlayService> controller;
+    private DimStateStore store;
+
+    @Before
+    public void setUp() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        store = DimStateStore.getInstance();
+        store.reset();
+        controller = Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+    }
+
+    @Test
+    public void showHideCyclesReuseTheSameViews() {
+        TestDimOverlayService service = controller.get();
+        View root = service.getFloatingControlsView();
+        assertNotNull(root);
+        List<View> before = collect(root);
+
+        DimControl control = (DimControl) service.onBind(null);
+        for (int i = 0; i < 10; i++) {
+            control.hideControls();
+            assertFalse(store.get().controlsVisible);
+            controller.withIntent(new Intent(DimOverlayService.ACTION_SHOW_FLOATING)).startCommand(0, i + 2);
+            assertTrue(store.get().controlsVisible);
+        }
+
+        assertEquals(1, service.getFloatingBuildCount());
+        assertSame(root, service.getFloatingControlsView());
+        assertEquals(before, collect(root));
+        assertTrue(service.recordingWindowManager.attached.contains(root));
+    }
+
+    @Test
+    public void reattachedControlsReflectChangesWhileHidden() {
+        TestDimOverlayService service = controller.get();
+        ((DimControl) service.onBind(null)).hideControls();
+        store.setDimLevel(200);
+        controller.withIntent(new Intent(DimOverlayService.ACTION_SHOW_FLOATING)).startCommand(0, 2);
+
+        ControlBarView bar = (ControlBarView) service.getFloatingControlsView();
+        assertEquals(DimLevel.toProgress(200), bar.getProgress());
+        assertEquals(1, service.getFloatingBuildCount());
+    }
+
+    private static List<View> collect(View view) {
+        List<View> out = new ArrayList<>();
+        out.add(view);
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) out.addAll(collect(group.getChildAt(i)));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,121 @@
+package com.code2consciousness.dimme;
+
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.os.SystemClock;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class FloatingDragControllerTest {
+
+    private RecordingWindowManager wm;
+    private FrameLayout window;
+    private WindowManager.LayoutParams params;
+    private ManualFrameScheduler frames;
+    private FloatingDragController controller;
+
+    @Before
+    public void setUp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        wm = new RecordingWindowManager((WindowManager) context.getSystemService(Context.WINDOW_SERVICE));
+        window = new FrameLayout(context);
+        params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.WRAP_CONTENT,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN
+                        | WindowManager.LayoutParams.FLAG_NOT_TOUCH_MODAL,
+                PixelFormat.TRANSLUCENT);
+        params.gravity = Gravity.CENTER;
+        wm.addView(window, params);
+        wm.reset();
+        frames = new ManualFrameScheduler();
+        controller = new FloatingDragController(wm, window, params, frames);
+    }
+
+    private void touch(int action, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(now, now, action, x, y, 0);
+        controller.onTouch(window, event);
+        event.recycle();
+    }
+
+    @Test
+    public void layoutUpdatesAreBoundedByFrames() {
+        touch(MotionEvent.ACTION_DOWN, 100, 100);
+        int moves = 0;
+        for (int frame = 0; frame < 5; frame++) {
+            // high sample rate panel: several moves per frame
+            for (int i = 0; i < 8; i++) {
+                moves++;
+                touch(MotionEvent.ACTION_MOVE, 100 + moves, 100 + moves);
+            }
+            frames.frame();
+        }
+        touch(MotionEvent.ACTION_UP, 100 + moves, 100 + moves);
+        frames.frame();
+
+        assertEquals(40, moves);
+        assertTrue(wm.updateCount <= frames.frameCount);
+        assertEquals(wm.updateCount, controller.getLayoutUpdateCount());
+        assertEquals(40, params.x);
+        assertEquals(40, params.y);
+        assertNotEquals(0, params.flags & WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE);
+    }
+
+    @Test
+    public void tapWithinOneFrameDoesNotTouchWindow() {
+        params.flags |= WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        controller.syncFromParams();
+
+        touch(MotionEvent.ACTION_DOWN, 50, 50);
+        touch(MotionEvent.ACTION_UP, 50, 50);
+        frames.frame();
+
+        assertEquals(0, wm.updateCount);
+    }
+
+    @Test
+    public void tapSpanningSeveralFramesDoesNotTouchWindow() {
+        params.flags |= WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE;
+        controller.syncFromParams();
+
+        touch(MotionEvent.ACTION_DOWN, 50, 50);
+        frames.frame();
+        // finger jitter inside the touch slop
+        touch(MotionEvent.ACTION_MOVE, 51, 52);
+        frames.frame();
+        frames.frame();
+        touch(MotionEvent.ACTION_UP, 51, 52);
+        frames.frame();
+
+        assertEquals(0, wm.updateCount);
+        assertNotEquals(0, params.flags & WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE);
+    }
+
+    @Test
+    public void positionIsClampedToDisplay() {
+        touch(MotionEvent.ACTION_DOWN, 0, 0);
+        touch(MotionEvent.ACTION_MOVE, 100_000, -100_000);
+        frames.frame();
+
+        android.graphics.Point size = new android.graphics.Point();
+        wm.getDefaultDisplay().getRealSize(size);
+        assertEquals(size.x / 2, params.x);
+        assertEquals(-size.y / 2, params.y);
+    }
+}
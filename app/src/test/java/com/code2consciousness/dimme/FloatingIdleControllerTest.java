@@ -0,0 +1,204 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class FloatingIdleControllerTest {
+
+    private static final long TIMEOUT_MS = 5_000;
+
+    /** Counts every message the controller sends, delayed or not. */
+    static final class CountingHandler extends Handler {
+        int sent;
+
+        CountingHandler() {
+            super(Looper.getMainLooper());
+        }
+
+        @Override
+        public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+            sent++;
+            return super.sendMessageAtTime(msg, uptimeMillis);
+        }
+    }
+
+    private CountingHandler handler;
+    private View view;
+    private FloatingIdleController idle;
+    private int collapses;
+    private int expands;
+
+    @Before
+    public void setUp() {
+        DimStateStore.getInstance().reset();
+        handler = new CountingHandler();
+        view = new View(ApplicationProvider.getApplicationContext());
+        idle = new FloatingIdleController(handler, TIMEOUT_MS, new FloatingIdleController.Target() {
+            @Override
+            public void collapse() {
+                collapses++;
+            }
+
+            @Override
+            public void expand() {
+                expands++;
+            }
+        });
+    }
+
+    private static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+
+    private boolean touch(int action) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(now, now, action, 10, 10, 0);
+        boolean consumed = idle.onTouch(view, event);
+        event.recycle();
+        return consumed;
+    }
+
+    @Test
+    public void collapsesAfterTimeoutWithoutTouches() {
+        idle.start();
+        advance(TIMEOUT_MS - 1);
+        assertEquals(0, collapses);
+
+        advance(1);
+        assertEquals(1, collapses);
+        assertTrue(idle.isCollapsed());
+    }
+
+    @Test
+    public void touchesDoNotPostCallbacks() {
+        idle.start();
+        assertEquals(1, handler.sent);
+
+        touch(MotionEvent.ACTION_DOWN);
+        for (int i = 0; i < 200; i++) touch(MotionEvent.ACTION_MOVE);
+        touch(MotionEvent.ACTION_UP);
+        assertEquals(1, handler.sent);
+    }
+
+    @Test
+    public void timeoutCountsFromTheLastTouch() {
+        idle.start();
+        for (int i = 0; i < 50; i++) {
+            advance(TIMEOUT_MS / 50);
+            touch(MotionEvent.ACTION_DOWN);
+            touch(MotionEvent.ACTION_UP);
+        }
+        assertEquals(0, collapses);
+        // 100 touches, but only the check that came due was reposted
+        assertTrue("sent " + handler.sent, handler.sent <= 2);
+
+        advance(TIMEOUT_MS);
+        assertEquals(1, collapses);
+    }
+
+    @Test
+    public void heldPressIsNotIdle() {
+        idle.start();
+        touch(MotionEvent.ACTION_DOWN);
+        advance(3 * TIMEOUT_MS);
+        assertEquals(0, collapses);
+
+        touch(MotionEvent.ACTION_UP);
+        advance(TIMEOUT_MS);
+        assertEquals(1, collapses);
+    }
+
+    @Test
+    public void firstTouchExpandsAndConsumesTheGesture() {
+        idle.start();
+        advance(TIMEOUT_MS);
+        assertTrue(idle.isCollapsed());
+
+        assertTrue(touch(MotionEvent.ACTION_DOWN));
+        assertEquals(1, expands);
+        assertFalse(idle.isCollapsed());
+        assertTrue(touch(MotionEvent.ACTION_MOVE));
+        assertTrue(touch(MotionEvent.ACTION_UP));
+
+        // the next gesture reaches the controls again, and the timer runs again
+        assertFalse(touch(MotionEvent.ACTION_DOWN));
+        assertFalse(touch(MotionEvent.ACTION_UP));
+        advance(TIMEOUT_MS);
+        assertEquals(2, collapses);
+    }
+
+    @Test
+    public void zeroTimeoutNeverCollapses() {
+        FloatingIdleController never = new FloatingIdleController(handler, 0, new FloatingIdleController.Target() {
+            @Override
+            public void collapse() {
+                collapses++;
+            }
+
+            @Override
+            public void expand() {
+            }
+        });
+        never.start();
+        advance(10 * TIMEOUT_MS);
+        assertEquals(0, collapses);
+        assertEquals(0, handler.sent);
+    }
+
+    @Test
+    public void serviceCollapsesControlsToAnEdgeHandle() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        TestDimOverlayService service =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1).get();
+        advance(500);
+        ControlBarView bar = (ControlBarView) service.getFloatingControlsView();
+        long timeout = service.getFloatingIdle().getTimeoutMs();
+        assertTrue(timeout > 0);
+        service.recordingWindowManager.reset();
+
+        advance(timeout);
+        assertTrue(bar.isCollapsed());
+        assertEquals(1, service.recordingWindowManager.updateCount);
+        assertEquals(1, service.getMetrics().get(ServiceMetrics.Counter.CONTROLS_COLLAPSES));
+        // still shown as far as the state is concerned; the window stays attached
+        DimState state = DimStateStore.getInstance().get();
+        assertTrue(state.controlsVisible);
+        assertEquals(0, service.recordingWindowManager.removeCount);
+
+        long now = SystemClock.uptimeMillis();
+        MotionEvent down = MotionEvent.obtain(now, now, MotionEvent.ACTION_DOWN, 5, 5, 0);
+        bar.dispatchTouchEvent(down);
+        down.recycle();
+
+        assertFalse(bar.isCollapsed());
+        assertEquals(2, service.recordingWindowManager.updateCount);
+        assertFalse(DimStateStore.getInstance().get().paused);
+    }
+}
@@ -0,0 +1,54 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class FloatingSeekBarRenderTest {
+
+    @Before
+    public void setUp() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        DimStateStore.getInstance().reset();
+    }
+
+    @Test
+    public void levelChangesNeverRelayoutTheControlsWindow() {
+        TestDimOverlayService service =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1).get();
+        shadowOf(Looper.getMainLooper()).idle();
+        service.recordingWindowManager.reset();
+        DimStateStore store = DimStateStore.getInstance();
+
+        for (int i = 0; i < 20; i++) {
+            store.setDimLevel(DimLevel.STEP * i);
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(17));
+        }
+
+        // background_color renders in the view, and progress does not change the window size
+        assertEquals(0, service.recordingWindowManager.updateCount);
+        assertTrue(service.getRenderScheduler().getFramesApplied() > 0);
+        assertFalse(service.getRenderScheduler().isPending());
+    }
+}
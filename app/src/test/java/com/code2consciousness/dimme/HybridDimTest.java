@@ -0,0 +1,222 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.ContentResolver;
+import android.content.Intent;
+import android.os.Looper;
+import android.provider.Settings;
+import android.view.WindowManager;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimSplit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class HybridDimTest {
+
+    private static final int USER_BRIGHTNESS = 200;
+
+    private ContentResolver resolver;
+    private ServiceController<TestDimOverlayService> controller;
+    private TestDimOverlayService service;
+
+    @Before
+    public void setUp() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        DimStateStore.getInstance().reset();
+        resolver = app.getContentResolver();
+        Settings.System.putInt(resolver, Settings.System.SCREEN_BRIGHTNESS, USER_BRIGHTNESS);
+        Settings.System.putInt(resolver, Settings.System.SCREEN_BRIGHTNESS_MODE,
+                Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC);
+        controller = Robolectric.buildService(TestDimOverlayService.class).create();
+        service = controller.get();
+        service.setDimRenderer(DimRenderer.Strategy.WINDOW_ALPHA);
+        service.setDimSplit(new DimSplit(0.6f));
+    }
+
+    private int systemBrightness() {
+        return Settings.System.getInt(resolver, Settings.System.SCREEN_BRIGHTNESS, -1);
+    }
+
+    private int systemMode() {
+        return Settings.System.getInt(resolver, Settings.System.SCREEN_BRIGHTNESS_MODE, -1);
+    }
+
+    @Test
+    public void defaultIsOverlayOnlyAndReachesBlack() {
+        TestDimOverlayService plain = Robolectric.buildService(TestDimOverlayService.class).create().get();
+        plain.updateDim(1f);
+
+        assertSame(DimSplit.OVERLAY_ONLY, plain.getDimSplit());
+        // the default renderer keeps the window alpha at 1 either way: no content limit
+        assertEquals(1f, plain.getActiveSplit().getMaxOverlayAlpha(), 0f);
+        assertEquals(1f, plain.getDimOverlayParams().alpha, 0f);
+        assertEquals(WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE,
+                plain.getDimOverlayParams().screenBrightness, 0f);
+        assertFalse(plain.getBacklight().isLowered());
+    }
+
+    @Test
+    public void windowAlphaIsHeldUnderTheOcclusionLimit() {
+        TestDimOverlayService plain = Robolectric.buildService(TestDimOverlayService.class).create().get();
+        plain.setDimRenderer(DimRenderer.Strategy.WINDOW_ALPHA);
+        plain.updateDim(0.9f);
+        assertEquals(DimSplit.MAX_OVERLAY_ALPHA, plain.getDimOverlayParams().alpha, 0f);
+
+        // switching away lifts the limit again
+        plain.setDimRenderer(DimRenderer.Strategy.BACKGROUND_COLOR);
+        assertEquals(1f, plain.getActiveSplit().getMaxOverlayAlpha(), 0f);
+    }
+
+    @Test
+    @Config(sdk = 30)
+    public void windowAlphaIsNotLimitedBeforeAndroid12() {
+        TestDimOverlayService plain = Robolectric.buildService(TestDimOverlayService.class).create().get();
+        plain.setDimRenderer(DimRenderer.Strategy.WINDOW_ALPHA);
+        plain.updateDim(0.9f);
+        assertEquals(0.9f, plain.getDimOverlayParams().alpha, 0f);
+    }
+
+    @Test
+    public void windowBrightnessGoesFirstAndOverlayStaysUnderOcclusionLimit() {
+        service.updateDim(0.3f);
+        WindowManager.LayoutParams params = service.getDimOverlayParams();
+        assertEquals(Math.round(USER_BRIGHTNESS * 0.7f) / 255f, params.screenBrightness, 1e-6f);
+        assertEquals(0f, params.alpha, 0f);
+
+        service.updateDim(1f);
+        assertEquals(Math.round(USER_BRIGHTNESS * 0.4f) / 255f, params.screenBrightness, 1e-6f);
+        assertEquals(DimSplit.MAX_OVERLAY_ALPHA, params.alpha, 0f);
+
+        // without the grant the system setting is never touched
+        assertEquals(USER_BRIGHTNESS, systemBrightness());
+        assertEquals(0, service.getBacklight().getSystemWrites());
+    }
+
+    @Test
+    public void brightnessOnlyChangeStillReachesTheWindow() {
+        service.updateDim(0.1f);
+        service.recordingWindowManager.reset();
+
+        // alpha stays 0 for both; only screenBrightness moves
+        service.updateDim(0.2f);
+        assertEquals(1, service.recordingWindowManager.updateCount);
+    }
+
+    @Test
+    public void systemBrightnessIsUsedWithTheGrantAndRestoredOnClose() {
+        service.writeSettingsGranted = true;
+        service.updateDim(0.5f);
+
+        assertTrue(service.getBacklight().isSystemPath());
+        assertEquals(USER_BRIGHTNESS / 2, systemBrightness());
+        assertEquals(Settings.System.SCREEN_BRIGHTNESS_MODE_MANUAL, systemMode());
+        assertEquals(WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE,
+                service.getDimOverlayParams().screenBrightness, 0f);
+
+        service.onStartCommand(new Intent("CLOSE"), 0, 1);
+
+        assertEquals(USER_BRIGHTNESS, systemBrightness());
+        assertEquals(Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC, systemMode());
+        assertFalse(service.getBacklight().isLowered());
+    }
+
+    @Test
+    public void sameBrightnessStepIsWrittenOnce() {
+        service.writeSettingsGranted = true;
+        service.updateDim(0.5f);
+        service.updateDim(0.501f);
+        service.updateDim(0.502f);
+
+        assertEquals(1, service.getBacklight().getSystemWrites());
+    }
+
+    @Test
+    public void fadeOrDragWritesTheSystemSettingAtMostOncePerInterval() {
+        service.writeSettingsGranted = true;
+        service.updateDim(0.2f);
+        assertEquals(1, service.getBacklight().getSystemWrites());
+
+        // 30 frames inside one interval: the window override tracks them, the setting does not
+        for (int i = 1; i <= 30; i++) service.updateDim(0.2f + i * 0.01f);
+        assertEquals(1, service.getBacklight().getSystemWrites());
+        WindowManager.LayoutParams params = service.getDimOverlayParams();
+        assertEquals(Math.round(USER_BRIGHTNESS * 0.5f) / 255f, params.screenBrightness, 1e-6f);
+
+        // the trailing write commits the last value and hands back to the system setting
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(BacklightController.MIN_WRITE_INTERVAL_MS));
+        assertEquals(2, service.getBacklight().getSystemWrites());
+        assertEquals(Math.round(USER_BRIGHTNESS * 0.5f), systemBrightness());
+        assertEquals(WindowManager.LayoutParams.BRIGHTNESS_OVERRIDE_NONE, params.screenBrightness, 0f);
+    }
+
+    @Test
+    public void undimmingRestoresBrightness() {
+        service.writeSettingsGranted = true;
+        service.updateDim(0.5f);
+        service.updateDim(0f);
+
+        assertEquals(USER_BRIGHTNESS, systemBrightness());
+        assertEquals(Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC, systemMode());
+    }
+
+    @Test
+    public void taskRemovalRestoresBrightness() {
+        service.writeSettingsGranted = true;
+        service.updateDim(0.5f);
+
+        service.onTaskRemoved(new Intent());
+
+        assertEquals(USER_BRIGHTNESS, systemBrightness());
+        assertEquals(Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC, systemMode());
+    }
+
+    @Test
+    public void processDeathKeepsTheUserBrightnessForTheRestart() {
+        service.writeSettingsGranted = true;
+        service.updateDim(0.5f);
+        service.getSessionStore().flush();
+
+        // the process dies with the setting lowered; a fresh one must not capture our value
+        DimStateStore.getInstance().reset();
+        ServiceController<TestDimOverlayService> restarted =
+                Robolectric.buildService(TestDimOverlayService.class).create();
+        BacklightController adopted = restarted.get().getBacklight();
+        assertTrue(adopted.hasSystemCapture());
+        assertEquals(USER_BRIGHTNESS, adopted.getOriginalBrightness());
+
+        restarted.get().onStartCommand(new Intent("CLOSE"), 0, 1);
+
+        assertEquals(USER_BRIGHTNESS, systemBrightness());
+        assertEquals(Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC, systemMode());
+    }
+
+    @Test
+    public void destroyRestoresBrightness() {
+        service.writeSettingsGranted = true;
+        service.updateDim(0.5f);
+
+        controller.destroy();
+
+        assertEquals(USER_BRIGHTNESS, systemBrightness());
+        assertEquals(Settings.System.SCREEN_BRIGHTNESS_MODE_AUTOMATIC, systemMode());
+    }
+}
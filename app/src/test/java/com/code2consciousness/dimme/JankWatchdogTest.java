@@ -0,0 +1,100 @@
+package com.code2consciousness.dimme;
+
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.code2consciousness.dimme.core.DimState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSystemClock;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class JankWatchdogTest {
+
+    private static final String DISPATCH =
+            ">>>>> Dispatching to Handler (android.os.Handler) {5f1c2a} com.code2consciousness.dimme.Foo$1@7e3b: 0";
+    private static final String FINISHED =
+            "<<<<< Finished to Handler (android.os.Handler) {5f1c2a} com.code2consciousness.dimme.Foo$1@7e3b";
+
+    private JankWatchdog watchdog;
+
+    @Before
+    public void setUp() {
+        DimStateStore.getInstance().reset();
+        watchdog = new JankWatchdog(Looper.getMainLooper(), DimStateStore.getInstance());
+    }
+
+    private void message(long millis) {
+        watchdog.println(DISPATCH);
+        ShadowSystemClock.advanceBy(Duration.ofMillis(millis));
+        watchdog.println(FINISHED);
+    }
+
+    private String dump() {
+        StringWriter out = new StringWriter();
+        watchdog.dump(new PrintWriter(out, true), "");
+        return out.toString();
+    }
+
+    @Test
+    public void recordsOnlySlowMessages() {
+        message(2);
+        message(5);
+        message(10);
+        message(20);
+
+        assertEquals(2, watchdog.getSlowCount());
+        assertEquals(1, watchdog.getJankCount());
+        String dump = dump();
+        assertTrue(dump.contains("messages=4"));
+        assertTrue(dump.contains("duration_us=20000 callback=com.code2consciousness.dimme.Foo$1 state="));
+    }
+
+    @Test
+    public void recordsStateAtTheSlowMessage() {
+        DimStateStore.getInstance().setDimLevel(150);
+        message(30);
+        DimStateStore.getInstance().setDimLevel(900);
+
+        assertTrue(dump().contains("state=" + DimState.INITIAL.withDimLevel(150)));
+    }
+
+    @Test
+    public void ringBufferKeepsTheNewestEntries() {
+        for (int i = 1; i <= JankWatchdog.CAPACITY + 5; i++) message(8 + i);
+
+        String dump = dump();
+        int entries = dump.split("\n  slow ", -1).length - 1;
+        assertEquals(JankWatchdog.CAPACITY, entries);
+        assertFalse(dump.contains("duration_us=9000 "));
+        assertTrue(dump.contains("duration_us=" + (8 + JankWatchdog.CAPACITY + 5) * 1000 + " "));
+        assertEquals(JankWatchdog.CAPACITY + 5, watchdog.getSlowCount());
+    }
+
+    @Test
+    public void finishWithoutDispatchIsIgnored() {
+        watchdog.println(FINISHED);
+        SystemClock.sleep(50);
+        watchdog.println(FINISHED);
+        assertEquals(0, watchdog.getSlowCount());
+    }
+
+    @Test
+    public void parsesCallbackName() {
+        assertEquals("com.code2consciousness.dimme.Foo$1", JankWatchdog.callbackName(DISPATCH));
+        assertEquals("null", JankWatchdog.callbackName(
+                ">>>>> Dispatching to Handler (android.view.Choreographer$FrameHandler) {1} null: 3"));
+        assertEquals("?", JankWatchdog.callbackName("garbage"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.code2consciousness.dimme;
+
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** FrameScheduler stepped by hand; {@link #frame()} runs the callbacks of one frame. */
+class ManualFrameScheduler implements FrameScheduler {
+
+    static final long FRAME_NANOS = 16_666_667L;
+
+    private final List<Choreographer.FrameCallback> pending = new ArrayList<>();
+    long frameTimeNanos;
+    int frameCount;
+
+    @Override
+    public void postFrameCallback(Choreographer.FrameCallback callback) {
+        pending.add(callback);
+    }
+
+    @Override
+    public void removeFrameCallback(Choreographer.FrameCallback callback) {
+        while (pending.remove(callback)) {
+            // remove every registration, like Choreographer does
+        }
+    }
+
+    boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    void frame() {
+        frameTimeNanos += FRAME_NANOS;
+        frameCount++;
+        List<Choreographer.FrameCallback> run = new ArrayList<>(pending);
+        pending.clear();
+        for (Choreographer.FrameCallback callback : run) {
+            callback.doFrame(frameTimeNanos);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.code2consciousness.dimme;
+
+import com.code2consciousness.dimme.core.DimLevel;
+import com.code2consciousness.dimme.core.DimState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NotificationPublisherTest {
+
+    /** Fake clock plus a single delayed-runnable slot, stepped by hand. */
+    private static final class ManualScheduler implements NotificationPublisher.Scheduler {
+        long now = 10_000;
+        Runnable runnable;
+        long dueAt;
+        int posts;
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+
+        @Override
+        public void postDelayed(Runnable runnable, long delayMs) {
+            this.runnable = runnable;
+            dueAt = now + delayMs;
+            posts++;
+        }
+
+        @Override
+        public void removeCallbacks(Runnable runnable) {
+            if (this.runnable == runnable) this.runnable = null;
+        }
+
+        void advance(long ms) {
+            now += ms;
+            if (runnable != null && now >= dueAt) {
+                Runnable due = runnable;
+                runnable = null;
+                due.run();
+            }
+        }
+    }
+
+    private ManualScheduler scheduler;
+    private NotificationPublisher publisher;
+    private final List<DimState> posted = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        scheduler = new ManualScheduler();
+        publisher = new NotificationPublisher(scheduler, NotificationPublisher.DEFAULT_MIN_INTERVAL_MS, posted::add);
+    }
+
+    private static DimState state(int level, boolean paused) {
+        return DimState.INITIAL.withDimLevel(level).withPaused(paused);
+    }
+
+    @Test
+    public void firstSubmitPostsAtOnce() {
+        DimState first = state(500, false);
+        publisher.submit(first);
+
+        assertEquals(1, posted.size());
+        assertSame(first, posted.get(0));
+    }
+
+    @Test
+    public void onlyPausedMinOrMaxChangesArePosted() {
+        publisher.submit(state(500, false));
+        scheduler.advance(1000);
+
+        // mid-range level changes look the same in the notification
+        publisher.submit(state(400, false));
+        publisher.submit(state(300, false));
+        scheduler.advance(1000);
+        assertEquals(1, posted.size());
+        assertEquals(2, publisher.getSuppressedCount());
+
+        publisher.submit(state(300, true));
+        scheduler.advance(1000);
+        publisher.submit(state(DimLevel.MIN, true));
+        scheduler.advance(1000);
+        publisher.submit(state(DimLevel.MAX, true));
+
+        assertEquals(4, posted.size());
+        assertTrue(posted.get(1).paused);
+        assertEquals(DimLevel.MIN, posted.get(2).dimLevel);
+        assertEquals(DimLevel.MAX, posted.get(3).dimLevel);
+    }
+
+    @Test
+    public void postsAreAtLeastTheMinimumIntervalApart() {
+        publisher.submit(state(500, false));
+        publisher.submit(state(500, true));
+
+        assertEquals(1, posted.size());
+        assertEquals(1, scheduler.posts);
+
+        scheduler.advance(NotificationPublisher.DEFAULT_MIN_INTERVAL_MS - 1);
+        assertEquals(1, posted.size());
+        scheduler.advance(1);
+        assertEquals(2, posted.size());
+    }
+
+    @Test
+    public void trailingPostCarriesTheLatestState() {
+        publisher.submit(state(500, false));
+        scheduler.advance(100);
+
+        // a burst inside the interval: one delayed post, picking up the last state
+        publisher.submit(state(500, true));
+        publisher.submit(state(500, false));
+        DimState last = state(DimLevel.MIN, false);
+        publisher.submit(last);
+        assertEquals(1, scheduler.posts);
+
+        scheduler.advance(NotificationPublisher.DEFAULT_MIN_INTERVAL_MS);
+        assertEquals(2, posted.size());
+        assertSame(last, posted.get(1));
+        assertEquals(DimLevel.MIN, publisher.getPublishedLevel());
+    }
+
+    @Test
+    public void trailingPostIsDroppedWhenTheBurstEndsWhereItStarted() {
+        publisher.submit(state(500, false));
+        publisher.submit(state(500, true));
+        publisher.submit(state(500, false));
+
+        scheduler.advance(NotificationPublisher.DEFAULT_MIN_INTERVAL_MS);
+        assertEquals(1, posted.size());
+    }
+
+    @Test
+    public void cancelDropsTheTrailingPost() {
+        publisher.submit(state(500, false));
+        publisher.submit(state(500, true));
+        publisher.cancel();
+
+        scheduler.advance(1000);
+        assertEquals(1, posted.size());
+    }
+
+    @Test
+    public void invalidateForcesTheNextPost() {
+        publisher.submit(state(500, false));
+        scheduler.advance(1000);
+        publisher.invalidate();
+        publisher.submit(state(400, false));
+
+        assertEquals(2, posted.size());
+    }
+}
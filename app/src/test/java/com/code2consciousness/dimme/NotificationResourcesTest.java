@@ -0,0 +1,52 @@
+package com.code2consciousness.dimme;
+
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class NotificationResourcesTest {
+
+    @Test
+    public void repeatedBuildsReuseBitmaps() {
+        DimOverlayService service = Robolectric.buildService(DimOverlayService.class).create().get();
+        NotificationResources res = service.getNotificationResources();
+
+        service.buildNotification();
+        int rasterized = res.getRasterizeCount();
+        Bitmap first = res.getTintedBitmap(R.drawable.ic_pause, res.accentColor);
+
+        for (int i = 0; i < 20; i++) {
+            service.buildNotification();
+        }
+
+        assertEquals(rasterized, res.getRasterizeCount());
+        assertSame(first, res.getTintedBitmap(R.drawable.ic_pause, res.accentColor));
+        assertSame(res, service.getNotificationResources());
+    }
+
+    @Test
+    public void densityChangeInvalidatesBitmaps() {
+        DimOverlayService service = Robolectric.buildService(DimOverlayService.class).create().get();
+        NotificationResources res = service.getNotificationResources();
+        Bitmap before = res.getTintedBitmap(R.drawable.ic_play, res.resumeColor);
+
+        Configuration sameDensity = new Configuration(service.getResources().getConfiguration());
+        sameDensity.fontScale = sameDensity.fontScale * 1.1f;
+        res.onConfigurationChanged(sameDensity);
+        assertSame(before, res.getTintedBitmap(R.drawable.ic_play, res.resumeColor));
+
+        Configuration newDensity = new Configuration(sameDensity);
+        newDensity.densityDpi = sameDensity.densityDpi * 2;
+        res.onConfigurationChanged(newDensity);
+        assertNotSame(before, res.getTintedBitmap(R.drawable.ic_play, res.resumeColor));
+    }
+}
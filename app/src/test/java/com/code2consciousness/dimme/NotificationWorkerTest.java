@@ -0,0 +1,131 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class NotificationWorkerTest {
+
+    private Application app;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        DimStateStore.getInstance().reset();
+    }
+
+    @Test
+    public void serviceNeverBuildsOnTheMainLooper() {
+        TestDimOverlayService service =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1).get();
+        DimStateStore store = DimStateStore.getInstance();
+
+        for (int i = 0; i < 10; i++) {
+            store.setPaused(i % 2 == 0);
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(300));
+            shadowOf(service.getNotificationWorker().getLooper()).idle();
+        }
+
+        assertEquals(0, service.mainThreadBuilds.get());
+        assertTrue(service.workerBuilds.get() > 0);
+        assertTrue(service.getNotificationWorker().getPostedCount() > 0);
+    }
+
+    @Test
+    public void staleSnapshotIsNotPosted() throws InterruptedException {
+        CountDownLatch firstBuildStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirstBuild = new CountDownLatch(1);
+        NotificationManager manager = (NotificationManager) app.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationWorker worker = new NotificationWorker(state -> {
+            if (state.dimLevel == 100) {
+                firstBuildStarted.countDown();
+                try {
+                    releaseFirstBuild.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+            return new Notification.Builder(app, "test").setContentText("level " + state.dimLevel).build();
+        }, manager, 7);
+
+        worker.submit(DimState.INITIAL.withDimLevel(100));
+        assertTrue(firstBuildStarted.await(5, TimeUnit.SECONDS));
+        worker.submit(DimState.INITIAL.withDimLevel(200));
+        worker.submit(DimState.INITIAL.withDimLevel(300));
+        releaseFirstBuild.countDown();
+        shadowOf(worker.getLooper()).idle();
+
+        assertEquals(1, worker.getStaleCount());
+        assertEquals(1, worker.getPostedCount());
+        assertEquals("level 300", shadowOf(manager).getNotification(7)
+                .extras.getCharSequence(Notification.EXTRA_TEXT).toString());
+        worker.quit();
+    }
+
+    @Test
+    public void cancelAndRemoveDuringABuildLeavesNothingPosted() throws InterruptedException {
+        CountDownLatch buildStarted = new CountDownLatch(1);
+        CountDownLatch releaseBuild = new CountDownLatch(1);
+        NotificationManager manager = (NotificationManager) app.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationWorker worker = new NotificationWorker(state -> {
+            buildStarted.countDown();
+            try {
+                releaseBuild.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {
+            }
+            return new Notification.Builder(app, "test").build();
+        }, manager, 9);
+
+        worker.submit(DimState.INITIAL);
+        assertTrue(buildStarted.await(5, TimeUnit.SECONDS));
+        // returns while the worker is still busy: nothing is shared with it but atomics
+        worker.cancelAndRemove();
+        releaseBuild.countDown();
+        shadowOf(worker.getLooper()).idle();
+
+        assertEquals(0, worker.getPostedCount());
+        assertNull(shadowOf(manager).getNotification(9));
+        worker.quit();
+    }
+
+    @Test
+    public void cancelDropsQueuedBuild() {
+        NotificationManager manager = (NotificationManager) app.getSystemService(Context.NOTIFICATION_SERVICE);
+        NotificationWorker worker = new NotificationWorker(
+                state -> new Notification.Builder(app, "test").build(), manager, 8);
+        shadowOf(worker.getLooper()).pause();
+
+        worker.submit(DimState.INITIAL);
+        worker.cancel();
+        shadowOf(worker.getLooper()).idle();
+
+        assertEquals(0, worker.getBuiltCount());
+        assertNull(shadowOf(manager).getNotification(8));
+        worker.quit();
+    }
+}
@@ -0,0 +1,164 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.PowerManager;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimAnimator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class QosControllerTest {
+
+    private static final long HOLD_MS = 10_000;
+
+    private final List<QosController.Tier> changes = new ArrayList<>();
+    private QosController qos;
+
+    @Before
+    public void setUp() {
+        DimStateStore.getInstance().reset();
+        qos = new QosController(new Handler(Looper.getMainLooper()), HOLD_MS, changes::add);
+    }
+
+    private static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+
+    @Test
+    public void tierMapping() {
+        assertEquals(QosController.Tier.FULL, QosController.tierFor(false, PowerManager.THERMAL_STATUS_NONE));
+        assertEquals(QosController.Tier.FULL, QosController.tierFor(false, PowerManager.THERMAL_STATUS_LIGHT));
+        assertEquals(QosController.Tier.REDUCED, QosController.tierFor(true, PowerManager.THERMAL_STATUS_NONE));
+        assertEquals(QosController.Tier.REDUCED, QosController.tierFor(false, PowerManager.THERMAL_STATUS_MODERATE));
+        assertEquals(QosController.Tier.MINIMAL, QosController.tierFor(true, PowerManager.THERMAL_STATUS_MODERATE));
+        assertEquals(QosController.Tier.MINIMAL, QosController.tierFor(false, PowerManager.THERMAL_STATUS_SEVERE));
+        assertEquals(QosController.Tier.MINIMAL, QosController.tierFor(false, PowerManager.THERMAL_STATUS_SHUTDOWN));
+    }
+
+    @Test
+    public void stricterTierAppliesImmediately() {
+        qos.setPowerSave(true);
+        assertEquals(QosController.Tier.REDUCED, qos.getTier());
+
+        qos.setThermalStatus(PowerManager.THERMAL_STATUS_SEVERE);
+        assertEquals(QosController.Tier.MINIMAL, qos.getTier());
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    public void steppingDownWaitsForTheHold() {
+        qos.setThermalStatus(PowerManager.THERMAL_STATUS_SEVERE);
+        qos.setThermalStatus(PowerManager.THERMAL_STATUS_NONE);
+
+        advance(HOLD_MS - 100);
+        assertEquals(QosController.Tier.MINIMAL, qos.getTier());
+
+        advance(200);
+        assertEquals(QosController.Tier.FULL, qos.getTier());
+        assertEquals(2, qos.getTransitionCount());
+    }
+
+    @Test
+    public void oscillatingThermalStatusDoesNotFlap() {
+        qos.setThermalStatus(PowerManager.THERMAL_STATUS_MODERATE);
+        for (int i = 0; i < 20; i++) {
+            qos.setThermalStatus(i % 2 == 0 ? PowerManager.THERMAL_STATUS_LIGHT : PowerManager.THERMAL_STATUS_MODERATE);
+            advance(HOLD_MS / 4);
+        }
+        assertEquals(QosController.Tier.REDUCED, qos.getTier());
+        assertEquals(1, qos.getTransitionCount());
+
+        // settles below the threshold: one step down after the hold
+        qos.setThermalStatus(PowerManager.THERMAL_STATUS_LIGHT);
+        advance(HOLD_MS + 1);
+        assertEquals(QosController.Tier.FULL, qos.getTier());
+        assertEquals(2, qos.getTransitionCount());
+    }
+
+    @Test
+    public void dumpListsTransitions() {
+        qos.setPowerSave(true);
+        qos.setThermalStatus(PowerManager.THERMAL_STATUS_SEVERE);
+        StringWriter out = new StringWriter();
+        qos.dump(new PrintWriter(out, true), "");
+
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("  tier=minimal\n  power_save=true\n  thermal_status=3\n  transitions=2\n"));
+        assertTrue(dump, dump.contains(" full->reduced power_save=true thermal_status=0\n"));
+        assertTrue(dump, dump.contains(" reduced->minimal power_save=true thermal_status=3\n"));
+    }
+
+    @Test
+    public void batterySaverBroadcastReachesTheService() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        TestDimOverlayService service =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1).get();
+        advance(500);
+        // a renderer that needs a redraw per change, so the swap to the cheap one shows
+        DimRenderer.Strategy configured = DimRenderer.Strategy.VIEW_ALPHA;
+        service.setDimRenderer(configured);
+
+        shadowOf(app.getSystemService(PowerManager.class)).setIsPowerSaveMode(true);
+        app.sendBroadcast(new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        advance(0);
+
+        assertEquals(QosController.Tier.REDUCED, service.getQosController().getTier());
+        assertEquals(0, service.getDimAnimator().getDurationNanos());
+        assertEquals(QosController.Tier.REDUCED.notificationIntervalMs,
+                service.getNotificationPublisher().getMinIntervalMs());
+        assertEquals(DimRenderer.Strategy.BACKGROUND_COLOR, service.getDimRendererStrategy());
+
+        shadowOf(app.getSystemService(PowerManager.class)).setIsPowerSaveMode(false);
+        app.sendBroadcast(new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        advance(QosController.DEFAULT_STEP_DOWN_HOLD_MS + 1);
+
+        assertEquals(QosController.Tier.FULL, service.getQosController().getTier());
+        assertEquals(DimAnimator.DEFAULT_DURATION_NANOS, service.getDimAnimator().getDurationNanos());
+        assertEquals(configured, service.getDimRendererStrategy());
+    }
+
+    @Test
+    public void defaultRendererIsLeftAloneByBatterySaver() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        TestDimOverlayService service =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1).get();
+        advance(500);
+        DimRenderer.Strategy configured = service.getDimRendererStrategy();
+        service.recordingWindowManager.reset();
+
+        shadowOf(app.getSystemService(PowerManager.class)).setIsPowerSaveMode(true);
+        app.sendBroadcast(new Intent(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED));
+        advance(0);
+
+        assertEquals(QosController.Tier.REDUCED, service.getQosController().getTier());
+        assertEquals(configured, service.getDimRendererStrategy());
+        assertEquals(0, service.recordingWindowManager.updateCount);
+    }
+}
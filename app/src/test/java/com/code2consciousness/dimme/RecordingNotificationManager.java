@@ -0,0 +1,43 @@
+package com.code2consciousness.dimme;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowNotificationManager;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * NotificationManager shadow that counts notify/cancel calls on top of Robolectric's normal
+ * bookkeeping. Counts are static because the service, the worker thread and
+ * startForeground may each go through a different manager instance; reset them in @Before.
+ * Enable with {@code @Config(shadows = RecordingNotificationManager.class)}.
+ */
+@Implements(NotificationManager.class)
+public class RecordingNotificationManager extends ShadowNotificationManager {
+
+    static final AtomicInteger notifyCount = new AtomicInteger();
+    static final AtomicInteger cancelCount = new AtomicInteger();
+
+    static void reset() {
+        notifyCount.set(0);
+        cancelCount.set(0);
+    }
+
+    // notify(int, Notification) and cancel(int) delegate to these
+    @Override
+    @Implementation
+    protected void notify(String tag, int id, Notification notification) {
+        notifyCount.incrementAndGet();
+        super.notify(tag, id, notification);
+    }
+
+    @Override
+    @Implementation
+    protected void cancel(String tag, int id) {
+        cancelCount.incrementAndGet();
+        super.cancel(tag, id);
+    }
+}
@@ -0,0 +1,68 @@
+package com.code2consciousness.dimme;
+
+import android.view.Display;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WindowManager that only records calls, so tests can assert how much window churn a
+ * scenario causes. Display queries are forwarded to the real window manager.
+ */
+class RecordingWindowManager implements WindowManager {
+
+    final List<View> attached = new ArrayList<>();
+    int addCount;
+    int removeCount;
+    int updateCount;
+    // the next this many addView calls throw, as before the system accepts overlay windows
+    int failingAdds;
+
+    private final WindowManager delegate;
+
+    RecordingWindowManager(WindowManager delegate) {
+        this.delegate = delegate;
+    }
+
+    void reset() {
+        addCount = 0;
+        removeCount = 0;
+        updateCount = 0;
+    }
+
+    @Override
+    public void addView(View view, ViewGroup.LayoutParams params) {
+        if (attached.contains(view)) throw new IllegalStateException("View already added");
+        if (failingAdds > 0) {
+            failingAdds--;
+            throw new WindowManager.BadTokenException("Unable to add window");
+        }
+        addCount++;
+        attached.add(view);
+    }
+
+    @Override
+    public void updateViewLayout(View view, ViewGroup.LayoutParams params) {
+        if (!attached.contains(view)) throw new IllegalArgumentException("View not attached");
+        updateCount++;
+    }
+
+    @Override
+    public void removeView(View view) {
+        if (!attached.remove(view)) throw new IllegalArgumentException("View not attached");
+        removeCount++;
+    }
+
+    @Override
+    public void removeViewImmediate(View view) {
+        removeView(view);
+    }
+
+    @Override
+    public Display getDefaultDisplay() {
+        return delegate.getDefaultDisplay();
+    }
+}
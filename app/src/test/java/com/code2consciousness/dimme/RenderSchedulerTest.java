@@ -0,0 +1,80 @@
+package com.code2consciousness.dimme;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RenderSchedulerTest {
+
+    private ManualFrameScheduler frames;
+    private RenderScheduler scheduler;
+    private final StringBuilder calls = new StringBuilder();
+
+    @Before
+    public void setUp() {
+        frames = new ManualFrameScheduler();
+        scheduler = new RenderScheduler(frames, new RenderScheduler.Target() {
+            @Override
+            public void renderDim(long frameTimeNanos) {
+                calls.append('D');
+            }
+
+            @Override
+            public void renderControls() {
+                calls.append('C');
+            }
+
+            @Override
+            public void renderLayout() {
+                calls.append('L');
+            }
+        });
+    }
+
+    @Test
+    public void changesInOneFrameApplyOnce() {
+        for (int i = 0; i < 10; i++) {
+            scheduler.invalidate(RenderScheduler.DIRTY_DIM);
+            scheduler.invalidate(RenderScheduler.DIRTY_CONTROLS);
+        }
+        frames.frame();
+
+        assertEquals("DC", calls.toString());
+        assertEquals(1, scheduler.getFramesApplied());
+        assertEquals(19, scheduler.getUpdatesMerged());
+        assertFalse(frames.hasPending());
+    }
+
+    @Test
+    public void appliesInFixedOrder() {
+        scheduler.invalidate(RenderScheduler.DIRTY_LAYOUT);
+        scheduler.invalidate(RenderScheduler.DIRTY_CONTROLS);
+        scheduler.invalidate(RenderScheduler.DIRTY_DIM);
+        frames.frame();
+
+        assertEquals("DCL", calls.toString());
+    }
+
+    @Test
+    public void progressOnlyNeverLaysOut() {
+        for (int i = 0; i < 100; i++) {
+            scheduler.invalidate(RenderScheduler.DIRTY_DIM | RenderScheduler.DIRTY_CONTROLS);
+            frames.frame();
+        }
+
+        assertEquals(-1, calls.indexOf("L"));
+        assertEquals(100, scheduler.getFramesApplied());
+        assertEquals(0, scheduler.getUpdatesMerged());
+    }
+
+    @Test
+    public void cancelDropsPendingWork() {
+        scheduler.invalidate(RenderScheduler.DIRTY_DIM);
+        scheduler.cancel();
+
+        assertFalse(frames.hasPending());
+        assertFalse(scheduler.isPending());
+        assertEquals(0, scheduler.getFramesApplied());
+    }
+}
@@ -0,0 +1,190 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
+import android.hardware.display.DisplayManager;
+import android.os.Looper;
+import android.os.PowerManager;
+import android.view.Display;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimLevel;
+import com.code2consciousness.dimme.core.DimState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ScreenSuspendTest {
+
+    private Application app;
+    private ServiceController<TestDimOverlayService> controller;
+    private TestDimOverlayService service;
+    private DimControl control;
+    private DimStateStore store;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        store = DimStateStore.getInstance();
+        store.reset();
+        controller = Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        service = controller.get();
+        control = (DimControl) service.onBind(null);
+        settle(500);
+    }
+
+    private void settle(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+        shadowOf(service.getNotificationWorker().getLooper()).idle();
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private int attached() {
+        return service.recordingWindowManager.attached.size();
+    }
+
+    private void screenOff() {
+        shadowOf(app.getSystemService(PowerManager.class)).setIsInteractive(false);
+        shadowOf(defaultDisplay()).setState(Display.STATE_OFF);
+        app.sendBroadcast(new Intent(Intent.ACTION_SCREEN_OFF));
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    // Wake-up: interactive first, the display is still powering on
+    private void wakeUp() {
+        shadowOf(app.getSystemService(PowerManager.class)).setIsInteractive(true);
+        app.sendBroadcast(new Intent(Intent.ACTION_SCREEN_ON));
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private Display defaultDisplay() {
+        return ((DisplayManager) app.getSystemService(Context.DISPLAY_SERVICE)).getDisplay(Display.DEFAULT_DISPLAY);
+    }
+
+    @Test
+    public void screenOffDetachesBothWindows() {
+        assertEquals(2, attached());
+
+        screenOff();
+
+        assertTrue(service.isScreenSuspended());
+        assertEquals(0, attached());
+        // the windows come back on wake-up, so the state still reports them
+        assertTrue(store.get().overlayVisible);
+        assertTrue(store.get().controlsVisible);
+        assertEquals(1, service.getMetrics().get(ServiceMetrics.Counter.SCREEN_SUSPENDS));
+    }
+
+    @Test
+    public void nothingIsPostedOrAttachedWhileSuspended() {
+        screenOff();
+        int posted = service.getNotificationWorker().getPostedCount();
+        service.recordingWindowManager.reset();
+
+        store.setDimLevel(DimLevel.MIN);
+        store.setPaused(true);
+        control.showControls();
+        settle(1000);
+
+        assertEquals(posted, service.getNotificationWorker().getPostedCount());
+        assertEquals(0, service.recordingWindowManager.addCount);
+        assertEquals(0, attached());
+    }
+
+    @Test
+    public void wakeUpRestoresAtFullDimBeforeTheFirstFrame() {
+        store.setDimLevel(700);
+        settle(500);
+        screenOff();
+        store.setDimLevel(800);
+        int posted = service.getNotificationWorker().getPostedCount();
+
+        wakeUp();
+
+        // attached synchronously in the wake-up callback, already at the final alpha
+        assertEquals(2, attached());
+        assertFalse(service.isScreenSuspended());
+        assertFalse(service.getDimAnimator().isRunning());
+        assertEquals(DimLevel.toAlpha(800), service.getDimAnimator().getValue(), 0f);
+        assertEquals(1, service.getMetrics().histogram(ServiceMetrics.Timer.SCREEN_RESUME).getCount());
+
+        settle(500);
+        assertEquals(1, service.getMetrics().histogram(ServiceMetrics.Timer.SCREEN_RESUME_TO_FRAME).getCount());
+        assertTrue("the notification catches up", service.getNotificationWorker().getPostedCount() > posted);
+    }
+
+    @Test
+    public void hidesWhileSuspendedStayHidden() {
+        screenOff();
+        control.hideControls();
+        wakeUp();
+
+        assertEquals(1, attached());
+        assertFalse(store.get().controlsVisible);
+    }
+
+    @Test
+    public void closeWhileSuspendedAttachesNothingOnWakeUp() {
+        screenOff();
+        controller.withIntent(new Intent("CLOSE")).startCommand(0, 2);
+        wakeUp();
+
+        assertEquals(0, attached());
+        DimState state = store.get();
+        assertFalse(state.overlayVisible);
+        assertFalse(state.controlsVisible);
+    }
+
+    @Test
+    public void visibilityRules() {
+        assertTrue("screen-off animation still shows the dim", ScreenStateMonitor.isVisible(Display.STATE_ON, false));
+        assertTrue("waking up before the display is on", ScreenStateMonitor.isVisible(Display.STATE_OFF, true));
+        assertFalse(ScreenStateMonitor.isVisible(Display.STATE_OFF, false));
+        assertFalse("always-on display", ScreenStateMonitor.isVisible(Display.STATE_DOZE, false));
+        assertFalse(ScreenStateMonitor.isVisible(Display.STATE_DOZE_SUSPEND, false));
+        assertTrue(ScreenStateMonitor.isVisible(Display.STATE_UNKNOWN, false));
+    }
+
+    @Test
+    public void displayStateNames() {
+        assertEquals("OFF", ScreenStateMonitor.displayStateName(Display.STATE_OFF));
+        assertEquals("ON", ScreenStateMonitor.displayStateName(Display.STATE_ON));
+        assertEquals("DOZE", ScreenStateMonitor.displayStateName(Display.STATE_DOZE));
+        assertEquals("DOZE_SUSPEND", ScreenStateMonitor.displayStateName(Display.STATE_DOZE_SUSPEND));
+        assertEquals("VR", ScreenStateMonitor.displayStateName(Display.STATE_VR));
+        assertEquals("ON_SUSPEND", ScreenStateMonitor.displayStateName(Display.STATE_ON_SUSPEND));
+        assertEquals("UNKNOWN", ScreenStateMonitor.displayStateName(Display.STATE_UNKNOWN));
+    }
+
+    @Test
+    public void dumpShowsScreenState() {
+        screenOff();
+        StringWriter out = new StringWriter();
+        service.dump(null, new PrintWriter(out, true), new String[0]);
+
+        String dump = out.toString();
+        assertTrue(dump, dump.contains("screen:\n  visible=false\n  interactive=false\n  display_state=OFF"));
+        assertTrue(dump, dump.contains("  suspended=true"));
+        assertTrue(dump, dump.contains("latency_screen_suspend count=1 "));
+    }
+}
@@ -0,0 +1,66 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Intent;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class ServiceDumpTest {
+
+    @Before
+    public void setUp() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        DimStateStore.getInstance().reset();
+    }
+
+    @Test
+    public void dumpReportsHotPathMetrics() {
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        TestDimOverlayService service = controller.get();
+        DimControl control = (DimControl) service.onBind(null);
+
+        control.setDim(300);
+        controller.withIntent(new Intent("PLUS")).startCommand(0, 2);
+        controller.withIntent(new Intent("MINUS")).startCommand(0, 3);
+        control.hideControls();
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+
+        StringWriter out = new StringWriter();
+        service.dump(null, new PrintWriter(out, true), new String[0]);
+        Map<String, String> values = ServiceMetricsTest.parse(out.toString());
+
+        assertEquals(String.valueOf(service.recordingWindowManager.addCount), values.get("wm_add"));
+        assertEquals("1", values.get("wm_remove"));
+        assertEquals("1", values.get("dim_changes_activity"));
+        assertEquals("2", values.get("dim_changes_notification"));
+        assertEquals("3", values.get("latency_on_start_command.count"));
+        assertEquals("1", values.get("latency_show_floating_controls.count"));
+        assertNotEquals("0", values.get("latency_command_to_alpha.count"));
+        assertNotNull(values.get("posted"));
+        assertNotNull(values.get("overlay_us"));
+    }
+}
@@ -0,0 +1,99 @@
+package com.code2consciousness.dimme;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ServiceMetricsTest {
+
+    /** Parses "key=value" tokens of every line, the way a script would. */
+    static Map<String, String> parse(String dump) {
+        Map<String, String> out = new HashMap<>();
+        for (String line : dump.split("\n")) {
+            String[] tokens = line.trim().split(" ");
+            String name = tokens[0].contains("=") ? "" : tokens[0] + ".";
+            for (String token : tokens) {
+                int eq = token.indexOf('=');
+                if (eq > 0) out.put(name + token.substring(0, eq), token.substring(eq + 1));
+            }
+        }
+        return out;
+    }
+
+    private static String dump(ServiceMetrics metrics) {
+        StringWriter out = new StringWriter();
+        metrics.dump(new PrintWriter(out, true), "");
+        return out.toString();
+    }
+
+    @Test
+    public void bucketsArePowersOfTwoMicros() {
+        assertEquals(0, ServiceMetrics.Histogram.bucketOf(0));
+        assertEquals(0, ServiceMetrics.Histogram.bucketOf(1));
+        assertEquals(1, ServiceMetrics.Histogram.bucketOf(2));
+        assertEquals(2, ServiceMetrics.Histogram.bucketOf(3));
+        assertEquals(10, ServiceMetrics.Histogram.bucketOf(1024));
+        assertEquals(11, ServiceMetrics.Histogram.bucketOf(1025));
+        assertEquals(ServiceMetrics.Histogram.BUCKETS - 1, ServiceMetrics.Histogram.bucketOf(Long.MAX_VALUE / 2));
+    }
+
+    @Test
+    public void histogramTracksCountMaxAndPercentiles() {
+        ServiceMetrics metrics = new ServiceMetrics();
+        for (int i = 0; i < 99; i++) metrics.record(ServiceMetrics.Timer.ON_START_COMMAND, 100_000); // 100 us
+        metrics.record(ServiceMetrics.Timer.ON_START_COMMAND, 20_000_000); // 20 ms
+
+        ServiceMetrics.Histogram h = metrics.histogram(ServiceMetrics.Timer.ON_START_COMMAND);
+        assertEquals(100, h.getCount());
+        assertEquals(20_000, h.getMaxMicros());
+        assertEquals(128, h.percentileMicros(50));
+        assertEquals(128, h.percentileMicros(99));
+        assertEquals(32_768, h.percentileMicros(100));
+    }
+
+    @Test
+    public void dumpIsParseable() {
+        ServiceMetrics metrics = new ServiceMetrics();
+        metrics.increment(ServiceMetrics.Counter.WM_ADD);
+        metrics.increment(ServiceMetrics.Counter.WM_ADD);
+        metrics.add(ServiceMetrics.Counter.DIM_CHANGES_SEEKBAR, 5);
+        metrics.record(ServiceMetrics.Timer.COMMAND_TO_ALPHA, 3_000_000);
+
+        Map<String, String> values = parse(dump(metrics));
+        assertEquals("2", values.get("wm_add"));
+        assertEquals("0", values.get("wm_remove"));
+        assertEquals("5", values.get("dim_changes_seekbar"));
+        assertEquals("1", values.get("latency_command_to_alpha.count"));
+        assertEquals("3000", values.get("latency_command_to_alpha.max_us"));
+        assertEquals(ServiceMetrics.Histogram.BUCKETS,
+                values.get("latency_command_to_alpha.buckets").split(",").length);
+        for (ServiceMetrics.Timer timer : ServiceMetrics.Timer.values()) {
+            assertNotNull(values.get("latency_" + timer.name().toLowerCase(java.util.Locale.ROOT) + ".p99_us"));
+        }
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws InterruptedException {
+        ServiceMetrics metrics = new ServiceMetrics();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.increment(ServiceMetrics.Counter.WM_UPDATE);
+                    metrics.record(ServiceMetrics.Timer.BUILD_NOTIFICATION, i * 1000L);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+
+        assertEquals(40_000, metrics.get(ServiceMetrics.Counter.WM_UPDATE));
+        assertEquals(40_000, metrics.histogram(ServiceMetrics.Timer.BUILD_NOTIFICATION).getCount());
+        assertEquals(9_999, metrics.histogram(ServiceMetrics.Timer.BUILD_NOTIFICATION).getMaxMicros());
+    }
+}
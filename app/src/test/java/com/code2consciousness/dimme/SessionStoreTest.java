@@ -0,0 +1,154 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimAnimator;
+import com.code2consciousness.dimme.core.DimState;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SessionStoreTest {
+
+    private Application app;
+
+    @Before
+    public void setUp() {
+        app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        DimStateStore.getInstance().reset();
+    }
+
+    @Test
+    public void recordRoundTrip() {
+        SessionRecord record = new SessionRecord(730, true, true, true, -40, 120);
+        assertEquals(SessionRecord.SIZE, record.encode().length);
+        assertEquals(record, SessionRecord.decode(record.encode()));
+        assertNull(SessionRecord.decode(new byte[3]));
+        assertNull(SessionRecord.decode(new byte[SessionRecord.SIZE]));
+
+        SessionRecord lowered = new SessionRecord(730, false, true, false, 0, 0, 180, 1);
+        assertEquals(lowered, SessionRecord.decode(lowered.encode()));
+        assertTrue(SessionRecord.decode(lowered.encode()).hasOriginalBrightness());
+    }
+
+    @Test
+    public void firstVersionRecordsAreStillRead() {
+        byte[] v1 = ByteBuffer.allocate(SessionRecord.SIZE_V1)
+                .putInt(0x44494D31) // "DIM1"
+                .putInt(640)
+                .put((byte) 1)
+                .putInt(0)
+                .putInt(0)
+                .array();
+        SessionRecord record = SessionRecord.decode(v1);
+        assertEquals(new SessionRecord(640, true, false, false, 0, 0), record);
+        assertFalse(record.hasOriginalBrightness());
+    }
+
+    @Test
+    public void saveIsCoalescedAndFlushedOnce() {
+        SessionStore store = new SessionStore(app.getFilesDir());
+        store.save(new SessionRecord(100, false, false, false, 0, 0));
+        store.save(new SessionRecord(200, false, false, false, 0, 0));
+        SessionRecord last = new SessionRecord(300, true, false, false, 0, 0);
+        store.save(last);
+        store.close();
+
+        assertEquals(last, new SessionStore(app.getFilesDir()).read());
+    }
+
+    @Test
+    public void stickyRestartRestoresSessionBeforeFirstFrame() {
+        // first process: user dims, pauses and drags the controls, then the process dies
+        ServiceController<TestDimOverlayService> first =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        DimStateStore.getInstance().setDimLevel(730);
+        DimStateStore.getInstance().setPaused(true);
+        DimStateStore.getInstance().setControlsVisible(true);
+        first.get().getSessionStore().flush();
+
+        // new process: static state is gone and the system redelivers a null intent
+        DimStateStore.getInstance().reset();
+        ServiceController<TestDimOverlayService> second =
+                Robolectric.buildService(TestDimOverlayService.class, null).create();
+        assertEquals(730, DimStateStore.getInstance().get().dimLevel);
+
+        second.startCommand(0, 1);
+        // no looper idling: everything is restored synchronously
+        DimState state = DimStateStore.getInstance().get();
+        assertEquals(730, state.dimLevel);
+        assertTrue(state.paused);
+        assertTrue(state.controlsVisible);
+    }
+
+    @Test
+    public void sessionIsRestoredWhenTheActivityResumesFirst() {
+        SessionStore store = new SessionStore(app.getFilesDir());
+        store.save(new SessionRecord(560, true, false, false, 0, 0));
+        store.close();
+
+        // MainActivity.onResume runs before the service is created
+        DimStateStore.getInstance().setAppVisible(true);
+        Robolectric.buildService(TestDimOverlayService.class, null).create().startCommand(0, 1);
+
+        DimState state = DimStateStore.getInstance().get();
+        assertEquals(560, state.dimLevel);
+        assertTrue(state.paused);
+        assertTrue(state.appVisible);
+    }
+
+    @Test
+    public void recreatedServiceKeepsTheInMemoryState() {
+        SessionStore store = new SessionStore(app.getFilesDir());
+        store.save(new SessionRecord(560, false, false, false, 0, 0));
+        store.close();
+
+        ServiceController<TestDimOverlayService> first =
+                Robolectric.buildService(TestDimOverlayService.class, null).create().startCommand(0, 1);
+        DimStateStore.getInstance().setDimLevel(300);
+        first.destroy();
+        store = new SessionStore(app.getFilesDir());
+        store.save(new SessionRecord(560, false, false, false, 0, 0));
+        store.close();
+
+        // same process, so the store is newer than the file
+        Robolectric.buildService(TestDimOverlayService.class, null).create().startCommand(0, 1);
+        assertEquals(300, DimStateStore.getInstance().get().dimLevel);
+    }
+
+    @Test
+    public void stickyRestartShowsOverlayAtSavedLevel() {
+        SessionStore store = new SessionStore(app.getFilesDir());
+        store.save(new SessionRecord(420, false, false, false, 0, 0));
+        store.close();
+
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class, null).create().startCommand(0, 1);
+        DimState state = DimStateStore.getInstance().get();
+        assertEquals(420, state.dimLevel);
+        assertTrue(state.overlayVisible);
+        assertEquals(1, controller.get().recordingWindowManager.attached.size());
+        // straight to the saved level, no fade from clear
+        DimAnimator animator = controller.get().getDimAnimator();
+        assertFalse(animator.isRunning());
+        assertEquals(state.overlayAlpha(), animator.getValue(), 0f);
+    }
+}
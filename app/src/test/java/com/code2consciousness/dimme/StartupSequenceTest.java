@@ -0,0 +1,132 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class StartupSequenceTest {
+
+    @Before
+    public void setUp() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        DimStateStore.getInstance().reset();
+    }
+
+    @Test
+    public void launchDimsWithoutWaitingForTheLooper() {
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        TestDimOverlayService service = controller.get();
+        StartupTrace trace = service.getStartupTrace();
+
+        // overlay and controls are attached synchronously, no 500 ms postDelayed
+        assertTrue(DimStateStore.getInstance().get().overlayVisible);
+        assertEquals(2, service.recordingWindowManager.attached.size());
+
+        for (StartupTrace.Phase phase : StartupTrace.Phase.values()) {
+            assertTrue(phase.name(), trace.reached(phase));
+        }
+        assertTrue(trace.elapsedNanos(StartupTrace.Phase.FOREGROUND) <= trace.elapsedNanos(StartupTrace.Phase.OVERLAY));
+        assertTrue(trace.elapsedNanos(StartupTrace.Phase.OVERLAY) <= trace.elapsedNanos(StartupTrace.Phase.CONTROLS));
+        assertTrue(trace.elapsedNanos(StartupTrace.Phase.CONTROLS) <= trace.elapsedNanos(StartupTrace.Phase.NOTIFICATION));
+        assertTrue(trace.timeToFirstDimMillis() < 500);
+    }
+
+    @Test
+    public void startsForegroundOnce() {
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        long foreground = controller.get().getStartupTrace().elapsedNanos(StartupTrace.Phase.FOREGROUND);
+        controller.startCommand(0, 2);
+
+        assertEquals(foreground, controller.get().getStartupTrace().elapsedNanos(StartupTrace.Phase.FOREGROUND));
+        assertNotNull(shadowOf(controller.get()).getLastForegroundNotification());
+    }
+
+    @Test
+    public void waitsForOverlayPermissionInsteadOfDelay() {
+        ShadowSettings.setCanDrawOverlays(false);
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        StartupTrace trace = controller.get().getStartupTrace();
+
+        assertTrue(trace.reached(StartupTrace.Phase.FOREGROUND));
+        assertFalse(trace.reached(StartupTrace.Phase.OVERLAY));
+        assertTrue(controller.get().recordingWindowManager.attached.isEmpty());
+    }
+
+    @Test
+    public void dumpReportsStartupPhases() {
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        StringWriter out = new StringWriter();
+        controller.get().dump(null, new PrintWriter(out, true), new String[0]);
+
+        assertTrue(out.toString().contains("overlay_us="));
+    }
+
+    @Test
+    public void overlayThatNeverAttachesStopsTheSession() {
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class).create();
+        TestDimOverlayService service = controller.get();
+        service.getSystemService(Context.WINDOW_SERVICE);
+        service.recordingWindowManager.failingAdds = Integer.MAX_VALUE;
+
+        controller.startCommand(0, 1);
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(500));
+
+        StartupTrace trace = service.getStartupTrace();
+        assertFalse("no first dim without a window", trace.reached(StartupTrace.Phase.OVERLAY));
+        assertEquals(StartupTrace.Phase.OVERLAY, trace.getFailedPhase());
+        assertTrue(service.recordingWindowManager.attached.isEmpty());
+        assertFalse(DimStateStore.getInstance().get().overlayVisible);
+        assertTrue(service.isClosed());
+        assertTrue(shadowOf(service).isStoppedBySelf());
+
+        StringWriter out = new StringWriter();
+        service.dump(null, new PrintWriter(out, true), new String[0]);
+        assertTrue(out.toString(), out.toString().contains("  failed=overlay\n"));
+    }
+
+    @Test
+    public void overlayPhaseIsMarkedByTheAddThatSucceeds() {
+        ServiceController<TestDimOverlayService> controller =
+                Robolectric.buildService(TestDimOverlayService.class).create();
+        TestDimOverlayService service = controller.get();
+        service.getSystemService(Context.WINDOW_SERVICE);
+        service.recordingWindowManager.failingAdds = 1;
+
+        controller.startCommand(0, 1);
+        StartupTrace trace = service.getStartupTrace();
+        assertFalse(trace.reached(StartupTrace.Phase.OVERLAY));
+
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(500));
+        assertTrue(trace.reached(StartupTrace.Phase.OVERLAY));
+        assertNull(trace.getFailedPhase());
+        assertEquals(2, service.recordingWindowManager.attached.size());
+    }
+}
@@ -0,0 +1,46 @@
+package com.code2consciousness.dimme;
+
+import android.app.Notification;
+import android.content.Context;
+import android.os.Looper;
+
+import com.code2consciousness.dimme.core.DimState;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** DimOverlayService wired to a {@link RecordingWindowManager}. */
+public class TestDimOverlayService extends DimOverlayService {
+
+    RecordingWindowManager recordingWindowManager;
+    final AtomicInteger mainThreadBuilds = new AtomicInteger();
+    final AtomicInteger workerBuilds = new AtomicInteger();
+    // stands in for the "Modify system settings" grant
+    boolean writeSettingsGranted;
+
+    @Override
+    boolean canWriteSettings() {
+        return writeSettingsGranted;
+    }
+
+    @Override
+    Notification buildNotification(DimState state) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mainThreadBuilds.incrementAndGet();
+        } else {
+            workerBuilds.incrementAndGet();
+        }
+        return super.buildNotification(state);
+    }
+
+    @Override
+    public Object getSystemService(String name) {
+        if (Context.WINDOW_SERVICE.equals(name)) {
+            if (recordingWindowManager == null) {
+                recordingWindowManager = new RecordingWindowManager(
+                        (android.view.WindowManager) super.getSystemService(name));
+            }
+            return recordingWindowManager;
+        }
+        return super.getSystemService(name);
+    }
+}
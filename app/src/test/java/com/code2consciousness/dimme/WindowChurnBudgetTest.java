@@ -0,0 +1,309 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Intent;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.MotionEvent;
+import android.view.View;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.code2consciousness.dimme.core.DimLevel;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Window and notification churn budgets for scripted service scenarios.
+ *
+ * Each scenario counts addView/removeView/updateViewLayout (RecordingWindowManager),
+ * notify() calls (RecordingNotificationManager), heavyweight objects built (notifications
+ * and control bars) and bytes allocated on the main thread, and fails when any of them
+ * goes over its budget. No notification may be built on the main thread at all.
+ *
+ * Counts are what the code paths produce, with a stated margin: window calls get none
+ * (each one is a WindowManager binder call, any extra is a regression), notify() and
+ * notification builds get +1 where the 250 ms throttle can split a burst differently.
+ * The byte budgets are loose on purpose, about four times a typical run: ThreadMXBean also
+ * counts Robolectric's looper and shadow bookkeeping, so they catch per-event allocation
+ * creeping back into a hot path (a bitmap or RemoteViews per drag frame), not small drift.
+ * A throwaway service runs the whole script first so class loading is not measured.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, shadows = RecordingNotificationManager.class)
+public class WindowChurnBudgetTest {
+
+    private static final class Budget {
+        final int adds;
+        final int removes;
+        final int updates;
+        final int notifies;
+        final int objects;
+        final long kilobytes;
+
+        Budget(int adds, int removes, int updates, int notifies, int objects, long kilobytes) {
+            this.adds = adds;
+            this.removes = removes;
+            this.updates = updates;
+            this.notifies = notifies;
+            this.objects = objects;
+            this.kilobytes = kilobytes;
+        }
+    }
+
+    // addView, removeView, updateViewLayout, notify, objects (notification builds + bar builds),
+    // KB allocated on the main thread
+    // start: both windows, startForeground + the full notification, one build of each
+    private static final Budget START = new Budget(2, 0, 0, 2, 2 + 1, 8192);
+    // at-max, trailing mid-range, at-min: three visible notification states
+    private static final Budget DRAG_100 = new Budget(0, 0, 0, 3 + 1, 3 + 1, 4096);
+    // only reaching the minimum changes the notification
+    private static final Budget PLUS_20 = new Budget(0, 0, 0, 1 + 1, 1 + 1, 1024);
+    private static final Budget PAUSE_RESUME = new Budget(0, 0, 0, 2, 2, 1024);
+    private static final Budget APP_VISIBLE = new Budget(0, 0, 0, 0, 0, 512);
+    // the retained bar is reattached: one addView, nothing rebuilt
+    private static final Budget SHOW_FLOATING = new Budget(1, 0, 0, 0, 0, 512);
+    private static final Budget CLOSE = new Budget(0, 2, 0, 0, 0, 1024);
+
+    // ControlBarView layout: the seek slot ends this far from the right edge
+    private static final int SEEK_RIGHT_INSET = 15 + 100 + 32 + 24 + 90 + 16;
+
+    private static final boolean CAN_MEASURE_ALLOCATION =
+            ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean;
+
+    private ServiceController<TestDimOverlayService> controller;
+    private TestDimOverlayService service;
+    private DimControl control;
+    private int startId;
+    private long allocationStart;
+    private int objectsStart;
+
+    @Before
+    public void setUp() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+
+        DimStateStore.getInstance().reset();
+        start();
+        runWholeScript();
+        controller.destroy();
+
+        // each scenario starts from a fresh session
+        new File(app.getFilesDir(), SessionStore.FILE_NAME).delete();
+        DimStateStore.getInstance().reset();
+        RecordingNotificationManager.reset();
+    }
+
+    private void start() {
+        controller = Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, ++startId);
+        service = controller.get();
+        control = (DimControl) service.onBind(null);
+        settle(500);
+    }
+
+    private void runWholeScript() {
+        drag();
+        plus20();
+        pauseResume();
+        appVisible();
+        control.hideControls();
+        settle(100);
+        showFloating();
+        close();
+    }
+
+    // --- scenarios ---
+
+    private void drag() {
+        ControlBarView bar = (ControlBarView) service.getFloatingControlsView();
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        bar.measure(spec, spec);
+        bar.layout(0, 0, bar.getMeasuredWidth(), bar.getMeasuredHeight());
+        float right = bar.getWidth() - SEEK_RIGHT_INSET - 1;
+        float left = right - bar.getSeekWidth() + 2;
+        float y = bar.getHeight() / 2f;
+
+        touch(bar, MotionEvent.ACTION_DOWN, left, y);
+        settle(16);
+        for (int i = 1; i < 99; i++) {
+            touch(bar, MotionEvent.ACTION_MOVE, left + (right - left) * i / 99f, y);
+            settle(16);
+        }
+        touch(bar, MotionEvent.ACTION_UP, right, y);
+        settle(500);
+    }
+
+    private void plus20() {
+        Intent plus = new Intent("PLUS");
+        for (int i = 0; i < 20; i++) {
+            controller.withIntent(plus).startCommand(0, ++startId);
+            settle(16);
+        }
+        settle(500);
+    }
+
+    private void pauseResume() {
+        Intent pause = new Intent("PAUSE");
+        controller.withIntent(pause).startCommand(0, ++startId);
+        settle(500);
+        controller.withIntent(pause).startCommand(0, ++startId);
+        settle(500);
+    }
+
+    private void appVisible() {
+        DimStateStore store = DimStateStore.getInstance();
+        store.setAppVisible(true);
+        control.showControls();
+        settle(100);
+        store.setAppVisible(false);
+        settle(500);
+    }
+
+    private void showFloating() {
+        Intent show = new Intent(DimOverlayService.ACTION_SHOW_FLOATING);
+        controller.withIntent(show).startCommand(0, ++startId);
+        controller.withIntent(show).startCommand(0, ++startId);
+        settle(500);
+    }
+
+    private void close() {
+        controller.withIntent(new Intent("CLOSE")).startCommand(0, ++startId);
+        settle(500);
+    }
+
+    // --- tests ---
+
+    @Test
+    public void start_withinBudget() {
+        begin();
+        start();
+        assertWithin("start", START);
+        assertEquals(2, service.recordingWindowManager.attached.size());
+    }
+
+    @Test
+    public void drag100Ticks_withinBudget() {
+        start();
+        begin();
+        drag();
+        assertWithin("drag x100", DRAG_100);
+        assertTrue(service.getMetrics().get(ServiceMetrics.Counter.DIM_CHANGES_SEEKBAR) >= 50);
+    }
+
+    @Test
+    public void plus20_withinBudget() {
+        start();
+        begin();
+        plus20();
+        assertWithin("PLUS x20", PLUS_20);
+        assertTrue(DimLevel.isAtMin(DimStateStore.getInstance().get().dimLevel));
+    }
+
+    @Test
+    public void pauseResume_withinBudget() {
+        start();
+        begin();
+        pauseResume();
+        assertWithin("pause/resume", PAUSE_RESUME);
+        assertFalse(DimStateStore.getInstance().get().paused);
+    }
+
+    @Test
+    public void appVisible_withinBudget() {
+        start();
+        begin();
+        appVisible();
+        assertWithin("APP_VISIBLE", APP_VISIBLE);
+        assertEquals(2, service.recordingWindowManager.attached.size());
+    }
+
+    @Test
+    public void showFloating_withinBudget() {
+        start();
+        control.hideControls();
+        settle(100);
+        int builds = service.getFloatingBuildCount();
+        begin();
+        showFloating();
+        assertWithin("SHOW_FLOATING", SHOW_FLOATING);
+        assertEquals("the retained bar is reattached, not rebuilt", builds, service.getFloatingBuildCount());
+    }
+
+    @Test
+    public void close_withinBudget() {
+        start();
+        begin();
+        close();
+        assertWithin("CLOSE", CLOSE);
+        assertTrue(service.recordingWindowManager.attached.isEmpty());
+    }
+
+    // --- measurement ---
+
+    private void begin() {
+        service.recordingWindowManager.reset();
+        RecordingNotificationManager.reset();
+        allocationStart = allocatedBytes();
+        objectsStart = objectsBuilt();
+    }
+
+    private int objectsBuilt() {
+        return service.mainThreadBuilds.get() + service.workerBuilds.get() + service.getFloatingBuildCount();
+    }
+
+    private void assertWithin(String scenario, Budget budget) {
+        long allocatedKb = (allocatedBytes() - allocationStart) / 1024;
+        RecordingWindowManager wm = service.recordingWindowManager;
+        int notifies = RecordingNotificationManager.notifyCount.get();
+        int objects = objectsBuilt() - objectsStart;
+        String report = scenario + ": addView=" + wm.addCount + " removeView=" + wm.removeCount
+                + " updateViewLayout=" + wm.updateCount + " notify=" + notifies
+                + " objects=" + objects + " main_thread_builds=" + service.mainThreadBuilds.get()
+                + " allocated_kb=" + (CAN_MEASURE_ALLOCATION ? allocatedKb : -1);
+
+        assertTrue(report, wm.addCount <= budget.adds);
+        assertTrue(report, wm.removeCount <= budget.removes);
+        assertTrue(report, wm.updateCount <= budget.updates);
+        assertTrue(report, notifies <= budget.notifies);
+        assertTrue(report, objects <= budget.objects);
+        assertEquals(report, 0, service.mainThreadBuilds.get());
+        if (CAN_MEASURE_ALLOCATION) assertTrue(report, allocatedKb <= budget.kilobytes);
+    }
+
+    private static long allocatedBytes() {
+        if (!CAN_MEASURE_ALLOCATION) return 0;
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // Runs the main looper for the given time, lets the notification worker post, then
+    // drains whatever the worker handed back.
+    private void settle(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+        shadowOf(service.getNotificationWorker().getLooper()).idle();
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private static void touch(View view, int action, float x, float y) {
+        long now = SystemClock.uptimeMillis();
+        MotionEvent event = MotionEvent.obtain(now, now, action, x, y, 0);
+        view.onTouchEvent(event);
+        event.recycle();
+    }
+}
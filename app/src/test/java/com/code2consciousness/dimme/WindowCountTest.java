@@ -0,0 +1,122 @@
+package com.code2consciousness.dimme;
+
+import android.Manifest;
+import android.app.Application;
+import android.content.Intent;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowSettings;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+/** One overlay window plus at most one control bar window, in every state. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class WindowCountTest {
+
+    private ServiceController<TestDimOverlayService> controller;
+    private DimControl control;
+    private DimStateStore store;
+
+    @Before
+    public void setUp() {
+        Application app = ApplicationProvider.getApplicationContext();
+        shadowOf(app).grantPermissions(Manifest.permission.POST_NOTIFICATIONS);
+        ShadowSettings.setCanDrawOverlays(true);
+        store = DimStateStore.getInstance();
+        store.reset();
+        controller = Robolectric.buildService(TestDimOverlayService.class).create().startCommand(0, 1);
+        control = (DimControl) controller.get().onBind(null);
+    }
+
+    private int attached() {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(500));
+        return controller.get().recordingWindowManager.attached.size();
+    }
+
+    @Test
+    public void windowsPerState() {
+        assertEquals("started", 2, attached());
+
+        store.setAppVisible(true);
+        control.showControls();
+        assertEquals("app in foreground shares the service bar", 2, attached());
+
+        store.setAppVisible(false);
+        assertEquals("app in background", 2, attached());
+
+        control.hideControls();
+        assertEquals("controls hidden", 1, attached());
+
+        controller.withIntent(new Intent(DimOverlayService.ACTION_SHOW_FLOATING)).startCommand(0, 2);
+        controller.withIntent(new Intent(DimOverlayService.ACTION_SHOW_FLOATING)).startCommand(0, 3);
+        assertEquals("shown twice", 2, attached());
+
+        control.setPaused(true);
+        assertEquals("paused keeps the cleared overlay", 2, attached());
+        control.setPaused(false);
+
+        controller.withIntent(new Intent("CLOSE")).startCommand(0, 4);
+        assertEquals("closed", 0, attached());
+    }
+
+    @Test
+    public void showingFromActivityNeverAddsASecondBar() {
+        assertEquals(2, attached());
+        for (int i = 0; i < 5; i++) {
+            store.setAppVisible(true);
+            control.showControls();
+            store.setAppVisible(false);
+        }
+        assertEquals(2, attached());
+        assertEquals(2, controller.get().recordingWindowManager.addCount);
+    }
+
+    @Test
+    public void closedServiceStaysOffScreenWhileBound() {
+        assertEquals(2, attached());
+        control.close();
+        assertEquals(0, attached());
+        int builds = controller.get().workerBuilds.get();
+
+        // the activity is still bound and keeps calling in
+        control.showControls();
+        control.setDim(800);
+        control.setPaused(true);
+        store.setAppVisible(true);
+        assertEquals(0, attached());
+        assertEquals(builds, controller.get().workerBuilds.get());
+        assertTrue(controller.get().isClosed());
+
+        // a new start reopens it
+        controller.withIntent(new Intent(DimOverlayService.ACTION_SHOW_FLOATING)).startCommand(0, 5);
+        assertFalse(controller.get().isClosed());
+        assertTrue(attached() > 0);
+    }
+
+    @Test
+    public void appVisibilityDoesNotReachTheNotification() {
+        assertEquals(2, attached());
+        NotificationPublisher publisher = controller.get().getNotificationPublisher();
+        long submits = publisher.getPostedCount() + publisher.getSuppressedCount();
+
+        for (int i = 0; i < 5; i++) {
+            store.setAppVisible(true);
+            store.setAppVisible(false);
+        }
+        attached();
+        assertEquals(submits, publisher.getPostedCount() + publisher.getSuppressedCount());
+    }
+}
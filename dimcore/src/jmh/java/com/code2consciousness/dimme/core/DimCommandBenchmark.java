@@ -0,0 +1,69 @@
+package com.code2consciousness.dimme.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * PLUS/MINUS/PAUSE processing: commands folded by {@link DimCommandFold} and applied to a
+ * {@link DimStateCell}, as the service does from its frame callback. The contended group
+ * runs three producer threads against one draining consumer.
+ */
+@State(Scope.Group)
+public class DimCommandBenchmark {
+
+    private static final int BURST = 10;
+
+    private DimCommandFold fold;
+    private DimStateCell cell;
+    private DimCommandFold.Sink sink;
+
+    @Setup
+    public void setUp() {
+        fold = new DimCommandFold();
+        cell = new DimStateCell();
+        sink = cell::applyCommand;
+    }
+
+    /** Per-thread direction so the level walks back and forth instead of sticking at a limit. */
+    @State(Scope.Thread)
+    public static class Producer {
+        int count;
+
+        int nextDelta() {
+            return (count++ & 8) == 0 ? DimLevel.STEP : -DimLevel.STEP;
+        }
+    }
+
+    /** A burst of taps folded into one change, all on one thread. */
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public boolean burst(Producer producer) {
+        for (int i = 0; i < BURST; i++) fold.addNudge(producer.nextDelta(), cell.get().paused);
+        return fold.drainTo(sink);
+    }
+
+    /** One command applied straight to the cell, no folding. */
+    @Benchmark
+    public void direct(Producer producer) {
+        cell.applyCommand(producer.nextDelta(), false);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public boolean enqueue(Producer producer) {
+        return fold.addNudge(producer.nextDelta(), cell.get().paused);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public boolean drain() {
+        return fold.drainTo(sink);
+    }
+}
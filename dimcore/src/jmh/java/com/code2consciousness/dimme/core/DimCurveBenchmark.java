@@ -0,0 +1,77 @@
+package com.code2consciousness.dimme.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Progress/alpha conversions and animator steps, i.e. the math run per SeekBar tick and per
+ * frame. All of it is pure, so the contended variant only shows whether anything shared
+ * sneaks in (it should scale with the thread count).
+ */
+@State(Scope.Thread)
+public class DimCurveBenchmark {
+
+    private static final long FRAME_NANOS = 16_666_667L;
+
+    @Param({"LINEAR", "DECELERATE", "EASE_IN_OUT"})
+    public String easing;
+
+    private DimAnimator animator;
+    private long frameTime;
+    private int progress;
+
+    @Setup
+    public void setUp() {
+        animator = new DimAnimator(0f);
+        switch (easing) {
+            case "LINEAR":
+                animator.setEasing(DimAnimator.LINEAR);
+                break;
+            case "EASE_IN_OUT":
+                animator.setEasing(DimAnimator.EASE_IN_OUT);
+                break;
+            default:
+                animator.setEasing(DimAnimator.DECELERATE);
+        }
+    }
+
+    /** One SeekBar tick: progress to level to overlay alpha. */
+    @Benchmark
+    public float progressToAlpha() {
+        progress = (progress + 1) % (DimLevel.PROGRESS_MAX + 1);
+        return DimLevel.toAlpha(DimLevel.fromProgress(progress));
+    }
+
+    /** Rebinding the bar from a restored alpha. */
+    @Benchmark
+    public int alphaToProgress() {
+        progress = (progress + 1) % (DimLevel.PROGRESS_MAX + 1);
+        return DimLevel.toProgress(DimLevel.fromAlpha(progress / (float) DimLevel.PROGRESS_MAX));
+    }
+
+    /** One animation frame; retargets whenever a transition finishes. */
+    @Benchmark
+    public float animatorFrame() {
+        frameTime += FRAME_NANOS;
+        if (!animator.isRunning()) {
+            animator.animateTo(animator.getValue() > 0.5f ? 0.1f : 0.9f, frameTime);
+        }
+        return animator.step(frameTime);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public float progressToAlphaContended() {
+        return progressToAlpha();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public float animatorFrameContended() {
+        return animatorFrame();
+    }
+}
@@ -0,0 +1,96 @@
+package com.code2consciousness.dimme.core;
+
+/**
+ * Frame-paced interpolation of the overlay alpha.
+ *
+ * The animator does not schedule anything itself: the caller steps it once per frame with
+ * the Choreographer frame time (RenderScheduler does this for the service) until
+ * {@link #isRunning()} turns false. Retargeting mid-animation starts the new segment from
+ * the value currently on screen, and the last step lands exactly on the target.
+ * No allocation after construction.
+ */
+public final class DimAnimator {
+
+    public interface Easing {
+        /** Maps linear progress 0..1 to eased progress 0..1. */
+        float ease(float t);
+    }
+
+    public static final Easing LINEAR = t -> t;
+    /** Starts at full speed, so a retarget mid-animation does not stall. */
+    public static final Easing DECELERATE = t -> 1f - (1f - t) * (1f - t);
+    public static final Easing EASE_IN_OUT = t -> t * t * (3f - 2f * t);
+
+    public static final long DEFAULT_DURATION_NANOS = 180_000_000L;
+
+    private long durationNanos = DEFAULT_DURATION_NANOS;
+    private Easing easing = DECELERATE;
+
+    private float value;
+    private float from;
+    private float target;
+    private long startNanos;
+    private boolean running;
+
+    public DimAnimator(float initialValue) {
+        value = initialValue;
+        target = initialValue;
+    }
+
+    public void setDurationNanos(long durationNanos) {
+        this.durationNanos = Math.max(0, durationNanos);
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public void setEasing(Easing easing) {
+        this.easing = easing;
+    }
+
+    /**
+     * Starts (or redirects) an animation toward target. nowNanos must use the frame clock's
+     * time base (CLOCK_MONOTONIC, like SystemClock.uptimeMillis).
+     */
+    public void animateTo(float target, long nowNanos) {
+        if (target == this.target && (running || value == target)) return;
+        this.target = target;
+        from = value;
+        startNanos = nowNanos;
+        running = value != target;
+    }
+
+    /** Moves to the value right away, cancelling any running animation. */
+    public void jumpTo(float value) {
+        this.value = value;
+        target = value;
+        running = false;
+    }
+
+    /** Advances to the given frame time and returns the value to render. */
+    public float step(long frameTimeNanos) {
+        if (!running) return value;
+        long elapsed = frameTimeNanos - startNanos;
+        if (durationNanos == 0 || elapsed >= durationNanos) {
+            value = target;
+            running = false;
+            return value;
+        }
+        float t = elapsed <= 0 ? 0f : elapsed / (float) durationNanos;
+        value = from + (target - from) * easing.ease(t);
+        return value;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    public float getTarget() {
+        return target;
+    }
+}
@@ -0,0 +1,49 @@
+package com.code2consciousness.dimme.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Accumulates PLUS/MINUS/PAUSE commands into one net change.
+ *
+ * Producers on any thread only add to two atomic counters (level delta and pause
+ * toggles); the consumer drains both at once, so N PLUS taps become a single
+ * -STEP * N change and paired PAUSE toggles cancel out. Scheduling the drain is up to
+ * the caller (the app's DimCommandQueue does it from a frame callback).
+ */
+public final class DimCommandFold {
+
+    public interface Sink {
+        void apply(int levelDelta, boolean togglePause);
+    }
+
+    private final AtomicInteger pendingDelta = new AtomicInteger();
+    private final AtomicInteger pendingToggles = new AtomicInteger();
+
+    /**
+     * Adds a level nudge unless the session is paused once the queued toggles are applied,
+     * which matches PLUS/MINUS being ignored while paused. Returns whether it was kept.
+     */
+    public boolean addNudge(int delta, boolean paused) {
+        if (paused ^ ((pendingToggles.get() & 1) == 1)) return false;
+        pendingDelta.addAndGet(delta);
+        return true;
+    }
+
+    public void addTogglePause() {
+        pendingToggles.incrementAndGet();
+    }
+
+    /** Hands the net change to the sink; returns false (and calls nothing) if it is a no-op. */
+    public boolean drainTo(Sink sink) {
+        int delta = pendingDelta.getAndSet(0);
+        boolean toggle = (pendingToggles.getAndSet(0) & 1) == 1;
+        if (delta == 0 && !toggle) return false;
+        sink.apply(delta, toggle);
+        return true;
+    }
+
+    public void clear() {
+        pendingDelta.set(0);
+        pendingToggles.set(0);
+    }
+}
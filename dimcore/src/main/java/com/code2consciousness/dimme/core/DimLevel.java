@@ -0,0 +1,51 @@
+package com.code2consciousness.dimme.core;
+
+/**
+ * Integer dim levels in per-mille (0 = no dimming, 1000 = fully black).
+ * Keeping the level as an int lets limit checks compare exactly instead of
+ * relying on float accumulation.
+ */
+public final class DimLevel {
+
+    public static final int MIN = 0;
+    public static final int MAX = 1000;
+    /** PLUS/MINUS step (5%). */
+    public static final int STEP = 50;
+    /** Default level when nothing else is known. */
+    public static final int DEFAULT = 500;
+    /** SeekBar range; progress is inverted (100 = no dimming). */
+    public static final int PROGRESS_MAX = 100;
+
+    private DimLevel() {
+    }
+
+    public static int clamp(int level) {
+        if (level < MIN) return MIN;
+        if (level > MAX) return MAX;
+        return level;
+    }
+
+    public static int fromAlpha(float alpha) {
+        return clamp(Math.round(alpha * MAX));
+    }
+
+    public static float toAlpha(int level) {
+        return clamp(level) / (float) MAX;
+    }
+
+    public static int fromProgress(int progress) {
+        return clamp((PROGRESS_MAX - progress) * (MAX / PROGRESS_MAX));
+    }
+
+    public static int toProgress(int level) {
+        return (MAX - clamp(level)) / (MAX / PROGRESS_MAX);
+    }
+
+    public static boolean isAtMin(int level) {
+        return level <= MIN;
+    }
+
+    public static boolean isAtMax(int level) {
+        return level >= MAX;
+    }
+}
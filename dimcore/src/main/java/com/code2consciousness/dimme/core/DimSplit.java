@@ -0,0 +1,77 @@
+package com.code2consciousness.dimme.core;
+
+/**
+ * Splits a requested dim (0..1) between the backlight and the overlay.
+ *
+ * The perceived brightness is backlight * (1 - overlay alpha), so a dim d asks for
+ * 1 - d of the user's brightness. The backlight goes down first, to at most
+ * {@code maxBacklightReduction}; only what it cannot reach is left to the overlay, whose
+ * alpha stays at or below {@code maxOverlayAlpha} (1 = no limit). With no backlight
+ * reduction the overlay takes the whole dim up to that limit.
+ */
+public final class DimSplit {
+
+    /**
+     * Android 12+ stops passing touches through untrusted overlays whose window opacity
+     * (LayoutParams.alpha) is above this (InputManager#getMaximumObscuringOpacityForTouch).
+     * Only a limit for renderers that drive window alpha; the caller decides.
+     */
+    public static final float MAX_OVERLAY_ALPHA = 0.8f;
+
+    /** Overlay only, no alpha limit (the original behavior). */
+    public static final DimSplit OVERLAY_ONLY = new DimSplit(0f);
+
+    private final float maxBacklightReduction;
+    private final float minBacklight;
+    private final float maxOverlayAlpha;
+
+    /** @param maxBacklightReduction how far the backlight may go down, 0..1 of the user's level */
+    public DimSplit(float maxBacklightReduction) {
+        this(maxBacklightReduction, 1f);
+    }
+
+    /** @param maxOverlayAlpha the darkest the overlay may get, 0..1 (1 = no limit) */
+    public DimSplit(float maxBacklightReduction, float maxOverlayAlpha) {
+        this.maxBacklightReduction = Math.max(0f, Math.min(1f, maxBacklightReduction));
+        this.minBacklight = 1f - this.maxBacklightReduction;
+        this.maxOverlayAlpha = clamp(maxOverlayAlpha);
+    }
+
+    /** The same split with another overlay limit; returns this when it does not change. */
+    public DimSplit withMaxOverlayAlpha(float maxOverlayAlpha) {
+        if (clamp(maxOverlayAlpha) == this.maxOverlayAlpha) return this;
+        return new DimSplit(maxBacklightReduction, maxOverlayAlpha);
+    }
+
+    public float getMaxOverlayAlpha() {
+        return maxOverlayAlpha;
+    }
+
+    public float getMaxBacklightReduction() {
+        return maxBacklightReduction;
+    }
+
+    public boolean usesBacklight() {
+        return maxBacklightReduction > 0f;
+    }
+
+    /** Backlight as a fraction of the user's brightness (1 = untouched). */
+    public float backlight(float dim) {
+        if (!usesBacklight()) return 1f;
+        return Math.max(minBacklight, 1f - clamp(dim));
+    }
+
+    /** Overlay alpha that, over {@link #backlight(float)}, makes up the rest of the dim. */
+    public float overlayAlpha(float dim) {
+        dim = clamp(dim);
+        if (!usesBacklight()) return Math.min(maxOverlayAlpha, dim);
+        float backlight = backlight(dim);
+        if (backlight <= 0f) return 0f; // the backlight alone reaches black
+        float alpha = 1f - (1f - dim) / backlight;
+        return Math.max(0f, Math.min(maxOverlayAlpha, alpha));
+    }
+
+    private static float clamp(float dim) {
+        return Math.max(0f, Math.min(1f, dim));
+    }
+}
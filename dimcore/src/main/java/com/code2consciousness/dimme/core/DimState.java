@@ -0,0 +1,96 @@
+package com.code2consciousness.dimme.core;
+
+/**
+ * Immutable snapshot of everything the service and the activity share.
+ * Instances are published through {@link DimStateCell}; use the with* methods to derive
+ * a changed copy (they return the same instance when nothing changes).
+ */
+public final class DimState {
+
+    public static final DimState INITIAL = new DimState(DimLevel.DEFAULT, false, false, false, false);
+
+    /** Requested dim level in per-mille, independent of pause. */
+    public final int dimLevel;
+    public final boolean paused;
+    /** Whether the full-screen dim window is attached. */
+    public final boolean overlayVisible;
+    /** Whether the floating control bar is attached and visible. */
+    public final boolean controlsVisible;
+    /** Whether MainActivity is in the foreground. */
+    public final boolean appVisible;
+
+    public DimState(int dimLevel, boolean paused, boolean overlayVisible, boolean controlsVisible,
+                    boolean appVisible) {
+        this.dimLevel = DimLevel.clamp(dimLevel);
+        this.paused = paused;
+        this.overlayVisible = overlayVisible;
+        this.controlsVisible = controlsVisible;
+        this.appVisible = appVisible;
+    }
+
+    /** Alpha the overlay should show right now (0 while paused). */
+    public float overlayAlpha() {
+        return paused ? 0f : DimLevel.toAlpha(dimLevel);
+    }
+
+    public int seekBarProgress() {
+        return DimLevel.toProgress(dimLevel);
+    }
+
+    public DimState withDimLevel(int level) {
+        level = DimLevel.clamp(level);
+        if (level == dimLevel) return this;
+        return new DimState(level, paused, overlayVisible, controlsVisible, appVisible);
+    }
+
+    public DimState withPaused(boolean value) {
+        if (value == paused) return this;
+        return new DimState(dimLevel, value, overlayVisible, controlsVisible, appVisible);
+    }
+
+    public DimState withOverlayVisible(boolean value) {
+        if (value == overlayVisible) return this;
+        return new DimState(dimLevel, paused, value, controlsVisible, appVisible);
+    }
+
+    public DimState withControlsVisible(boolean value) {
+        if (value == controlsVisible) return this;
+        return new DimState(dimLevel, paused, overlayVisible, value, appVisible);
+    }
+
+    public DimState withAppVisible(boolean value) {
+        if (value == appVisible) return this;
+        return new DimState(dimLevel, paused, overlayVisible, controlsVisible, value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DimState)) return false;
+        DimState other = (DimState) o;
+        return dimLevel == other.dimLevel
+                && paused == other.paused
+                && overlayVisible == other.overlayVisible
+                && controlsVisible == other.controlsVisible
+                && appVisible == other.appVisible;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = dimLevel;
+        result = 31 * result + (paused ? 1 : 0);
+        result = 31 * result + (overlayVisible ? 1 : 0);
+        result = 31 * result + (controlsVisible ? 1 : 0);
+        result = 31 * result + (appVisible ? 1 : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "DimState{level=" + dimLevel
+                + ", paused=" + paused
+                + ", overlay=" + overlayVisible
+                + ", controls=" + controlsVisible
+                + ", appVisible=" + appVisible + '}';
+    }
+}
@@ -0,0 +1,125 @@
+package com.code2consciousness.dimme.core;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Atomic holder of a {@link DimState} snapshot.
+ *
+ * Every update is a compare-and-set of an immutable snapshot, retried when another thread
+ * wins the race, so the cell can be written from any thread without locks. The onChange
+ * callback runs on the updating thread after each successful publication; the app's
+ * DimStateStore uses it to notify its listeners.
+ */
+public final class DimStateCell {
+
+    public interface Mutation {
+        DimState apply(DimState state);
+    }
+
+    private static final Runnable NO_CALLBACK = () -> {
+    };
+
+    private final AtomicReference<DimState> state = new AtomicReference<>(DimState.INITIAL);
+    private final Runnable onChange;
+
+    public DimStateCell() {
+        this(NO_CALLBACK);
+    }
+
+    public DimStateCell(Runnable onChange) {
+        this.onChange = onChange;
+    }
+
+    public DimState get() {
+        return state.get();
+    }
+
+    /** Replaces the snapshot without calling onChange. */
+    public void reset(DimState initial) {
+        state.set(initial);
+    }
+
+    /** Applies the mutation atomically; returns the resulting snapshot. */
+    public DimState update(Mutation mutation) {
+        while (true) {
+            DimState current = state.get();
+            DimState next = mutation.apply(current);
+            if (next == null || next.equals(current)) return current;
+            if (state.compareAndSet(current, next)) {
+                onChange.run();
+                return next;
+            }
+        }
+    }
+
+    public void setDimLevel(int level) {
+        while (true) {
+            DimState current = state.get();
+            if (publish(current, current.withDimLevel(level))) return;
+        }
+    }
+
+    /** Moves the dim level by delta, clamped to the valid range. */
+    public void nudgeDimLevel(int delta) {
+        while (true) {
+            DimState current = state.get();
+            if (publish(current, current.withDimLevel(current.dimLevel + delta))) return;
+        }
+    }
+
+    public void setPaused(boolean paused) {
+        while (true) {
+            DimState current = state.get();
+            if (publish(current, current.withPaused(paused))) return;
+        }
+    }
+
+    public void togglePaused() {
+        while (true) {
+            DimState current = state.get();
+            if (publish(current, current.withPaused(!current.paused))) return;
+        }
+    }
+
+    public void setOverlayVisible(boolean visible) {
+        while (true) {
+            DimState current = state.get();
+            if (publish(current, current.withOverlayVisible(visible))) return;
+        }
+    }
+
+    public void setControlsVisible(boolean visible) {
+        while (true) {
+            DimState current = state.get();
+            if (publish(current, current.withControlsVisible(visible))) return;
+        }
+    }
+
+    public void setAppVisible(boolean visible) {
+        while (true) {
+            DimState current = state.get();
+            if (publish(current, current.withAppVisible(visible))) return;
+        }
+    }
+
+    /**
+     * Applies a folded command batch as one atomic update: an optional pause toggle
+     * followed by a level delta.
+     */
+    public void applyCommand(int levelDelta, boolean togglePause) {
+        while (true) {
+            DimState current = state.get();
+            DimState next = togglePause ? current.withPaused(!current.paused) : current;
+            next = next.withDimLevel(next.dimLevel + levelDelta);
+            if (publish(current, next)) return;
+        }
+    }
+
+    /** Returns false if another thread won the race and the caller must retry. */
+    private boolean publish(DimState current, DimState next) {
+        if (next == current) return true;
+        if (!state.compareAndSet(current, next)) return false;
+        onChange.run();
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+package com.code2consciousness.dimme.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DimAnimatorTest {
+
+    private static final long FRAME = 16_666_667L; // 60 Hz
+
+    private long now;
+
+    private float runToEnd(DimAnimator animator) {
+        float value = animator.getValue();
+        int frames = 0;
+        while (animator.isRunning()) {
+            now += FRAME;
+            value = animator.step(now);
+            assertTrue("animation did not finish", ++frames < 1000);
+        }
+        return value;
+    }
+
+    @Test
+    public void finishesExactlyOnTarget() {
+        DimAnimator animator = new DimAnimator(0f);
+        animator.animateTo(0.55f, now);
+
+        assertEquals(0.55f, runToEnd(animator), 0f);
+        assertFalse(animator.isRunning());
+    }
+
+    @Test
+    public void takesConfiguredDuration() {
+        DimAnimator animator = new DimAnimator(0f);
+        animator.setDurationNanos(10 * FRAME);
+        animator.setEasing(DimAnimator.LINEAR);
+        animator.animateTo(1f, now);
+
+        int frames = 0;
+        while (animator.isRunning()) {
+            now += FRAME;
+            animator.step(now);
+            frames++;
+        }
+        assertEquals(10, frames);
+    }
+
+    @Test
+    public void valuesMoveMonotonicallyTowardTarget() {
+        for (DimAnimator.Easing easing : new DimAnimator.Easing[]{
+                DimAnimator.LINEAR, DimAnimator.DECELERATE, DimAnimator.EASE_IN_OUT}) {
+            DimAnimator animator = new DimAnimator(0.8f);
+            animator.setEasing(easing);
+            animator.animateTo(0.2f, now);
+            float last = 0.8f;
+            while (animator.isRunning()) {
+                now += FRAME;
+                float value = animator.step(now);
+                assertTrue(value <= last);
+                assertTrue(value >= 0.2f);
+                last = value;
+            }
+            assertEquals(0.2f, last, 0f);
+        }
+    }
+
+    @Test
+    public void retargetContinuesFromCurrentValue() {
+        DimAnimator animator = new DimAnimator(0f);
+        animator.animateTo(1f, now);
+        now += FRAME;
+        animator.step(now);
+        now += FRAME;
+        float mid = animator.step(now);
+
+        animator.animateTo(0.3f, now);
+        now += FRAME;
+        float next = animator.step(now);
+
+        // no jump: the new segment starts where the old one was
+        assertTrue(Math.abs(next - mid) < 0.2f);
+        assertEquals(0.3f, runToEnd(animator), 0f);
+    }
+
+    @Test
+    public void zeroDurationLandsOnFirstFrame() {
+        DimAnimator animator = new DimAnimator(0.5f);
+        animator.setDurationNanos(0);
+        animator.animateTo(0.1f, now);
+
+        now += FRAME;
+        assertEquals(0.1f, animator.step(now), 0f);
+        assertFalse(animator.isRunning());
+    }
+
+    @Test
+    public void sameTargetIsNoOp() {
+        DimAnimator animator = new DimAnimator(0.4f);
+        animator.animateTo(0.4f, now);
+        assertFalse(animator.isRunning());
+
+        animator.jumpTo(0.7f);
+        assertEquals(0.7f, animator.getValue(), 0f);
+        assertFalse(animator.isRunning());
+    }
+}
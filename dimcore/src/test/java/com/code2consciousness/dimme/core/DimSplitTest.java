@@ -0,0 +1,80 @@
+package com.code2consciousness.dimme.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DimSplitTest {
+
+    @Test
+    public void overlayOnlyPassesDimThrough() {
+        for (int level = DimLevel.MIN; level <= DimLevel.MAX; level += DimLevel.STEP) {
+            float dim = DimLevel.toAlpha(level);
+            assertEquals(dim, DimSplit.OVERLAY_ONLY.overlayAlpha(dim), 0f);
+            assertEquals(1f, DimSplit.OVERLAY_ONLY.backlight(dim), 0f);
+        }
+        assertFalse(DimSplit.OVERLAY_ONLY.usesBacklight());
+        assertEquals(1f, DimSplit.OVERLAY_ONLY.overlayAlpha(1f), 0f);
+    }
+
+    @Test
+    public void overlayLimitIsOptIn() {
+        DimSplit capped = DimSplit.OVERLAY_ONLY.withMaxOverlayAlpha(DimSplit.MAX_OVERLAY_ALPHA);
+        assertEquals(0.5f, capped.overlayAlpha(0.5f), 0f);
+        assertEquals(DimSplit.MAX_OVERLAY_ALPHA, capped.overlayAlpha(1f), 0f);
+        assertSame(capped, capped.withMaxOverlayAlpha(DimSplit.MAX_OVERLAY_ALPHA));
+        assertSame(DimSplit.OVERLAY_ONLY, DimSplit.OVERLAY_ONLY.withMaxOverlayAlpha(1f));
+    }
+
+    @Test
+    public void backlightGoesDownFirst() {
+        DimSplit split = new DimSplit(0.6f);
+        // 1 - dim is still within the backlight's range: no overlay at all
+        assertEquals(0.7f, split.backlight(0.3f), 1e-6f);
+        assertEquals(0f, split.overlayAlpha(0.3f), 0f);
+        assertEquals(0.4f, split.backlight(0.6f), 1e-6f);
+        assertEquals(0f, split.overlayAlpha(0.6f), 1e-6f);
+
+        // past the floor the overlay makes up the rest
+        assertEquals(0.4f, split.backlight(0.8f), 1e-6f);
+        assertEquals(0.5f, split.overlayAlpha(0.8f), 1e-6f);
+    }
+
+    @Test
+    public void combinedBrightnessMatchesRequestWhereReachable() {
+        DimSplit split = new DimSplit(0.5f);
+        for (int level = DimLevel.MIN; level <= DimLevel.MAX; level += 10) {
+            float dim = DimLevel.toAlpha(level);
+            float alpha = split.overlayAlpha(dim);
+            float perceived = split.backlight(dim) * (1f - alpha);
+            if (alpha < DimSplit.MAX_OVERLAY_ALPHA) {
+                assertEquals("level " + level, 1f - dim, perceived, 1e-5f);
+            } else {
+                // capped: as dark as allowed, never darker than asked
+                assertTrue("level " + level, perceived >= 1f - dim - 1e-5f);
+            }
+        }
+    }
+
+    @Test
+    public void overlayStaysBelowTouchOcclusionLimit() {
+        DimSplit split = new DimSplit(0.3f, DimSplit.MAX_OVERLAY_ALPHA);
+        float previous = 0f;
+        for (int level = DimLevel.MIN; level <= DimLevel.MAX; level += 10) {
+            float alpha = split.overlayAlpha(DimLevel.toAlpha(level));
+            assertTrue(alpha <= DimSplit.MAX_OVERLAY_ALPHA);
+            assertTrue("not monotonic at " + level, alpha >= previous);
+            previous = alpha;
+        }
+        assertEquals(DimSplit.MAX_OVERLAY_ALPHA, split.overlayAlpha(1f), 0f);
+    }
+
+    @Test
+    public void reductionIsClamped() {
+        assertEquals(1f, new DimSplit(2f).getMaxBacklightReduction(), 0f);
+        assertEquals(0f, new DimSplit(-1f).getMaxBacklightReduction(), 0f);
+        // a backlight allowed to go to zero needs no overlay
+        assertEquals(0f, new DimSplit(1f).backlight(1f), 0f);
+        assertEquals(0f, new DimSplit(1f).overlayAlpha(1f), 0f);
+    }
+}
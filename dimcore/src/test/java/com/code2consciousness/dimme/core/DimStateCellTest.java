@@ -0,0 +1,71 @@
+package com.code2consciousness.dimme.core;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DimStateCellTest {
+
+    @Test
+    public void noChangeDoesNotPublish() {
+        AtomicInteger changes = new AtomicInteger();
+        DimStateCell cell = new DimStateCell(changes::incrementAndGet);
+
+        cell.setDimLevel(DimLevel.DEFAULT);
+        cell.setPaused(false);
+        cell.nudgeDimLevel(0);
+        cell.applyCommand(0, false);
+
+        assertSame(DimState.INITIAL, cell.get());
+        assertEquals(0, changes.get());
+    }
+
+    @Test
+    public void commandTogglesThenMovesLevel() {
+        DimStateCell cell = new DimStateCell();
+        cell.applyCommand(-3 * DimLevel.STEP, true);
+
+        assertTrue(cell.get().paused);
+        assertEquals(DimLevel.DEFAULT - 3 * DimLevel.STEP, cell.get().dimLevel);
+    }
+
+    @Test
+    public void levelStaysClamped() {
+        DimStateCell cell = new DimStateCell();
+        for (int i = 0; i < 30; i++) cell.nudgeDimLevel(DimLevel.STEP);
+        assertEquals(DimLevel.MAX, cell.get().dimLevel);
+
+        cell.setDimLevel(-5);
+        assertEquals(DimLevel.MIN, cell.get().dimLevel);
+    }
+
+    @Test
+    public void contendedUpdatesAreNotLost() throws InterruptedException {
+        int threads = 4;
+        int perThread = 10_000;
+        AtomicInteger changes = new AtomicInteger();
+        DimStateCell cell = new DimStateCell(changes::incrementAndGet);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) cell.togglePaused();
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) worker.join();
+
+        // every toggle publishes exactly once, and an even number of them cancels out
+        assertEquals(threads * perThread, changes.get());
+        assertFalse(cell.get().paused);
+    }
+}